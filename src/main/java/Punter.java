@@ -11,6 +11,8 @@ import org.slf4j.LoggerFactory;
 import solvers.*;
 import solvers.chris.HeuristicSolver;
 import solvers.chris.MonteCarloSolver;
+import solvers.chris.RolloutPolicy;
+import solvers.chris.UctSolver;
 import state.GameState;
 import state.GameStateFactory;
 
@@ -35,6 +37,10 @@ public class Punter {
     private static Solver getSolver(String arg) {
         switch (arg) {
             case "montecarlo":      return new MonteCarloSolver((TIME_OUT_MS - 60) * 1000000L);
+            case "mcfrontier":      return new MonteCarloSolver((TIME_OUT_MS - 60) * 1000000L,
+                                            Runtime.getRuntime().availableProcessors(), RolloutPolicy.FRONTIER,
+                                            MonteCarloSolver.FRONTIER_EPSILON);
+            case "uct":             return new UctSolver((TIME_OUT_MS - 60) * 1000000L);
             case "random":          return new RandomClaimer();
             case "simple":          return new SimpleMineClaimer();
             case "maxpoint":        return new MaxPointClaimer();
@@ -129,6 +135,8 @@ public class Punter {
     private final ObjectMapper objectMapper;
     private final Solver solver;
     private final GameStateFactory gameStateFactory;
+    /** Counted down when the last solver call has returned, also after a timeout. */
+    private CountDownLatch solverDone = new CountDownLatch(0);
 
     public static class NamedThreadFactory implements ThreadFactory {
 
@@ -179,11 +187,13 @@ public class Punter {
             // 1. Setup
             LOG.info("Receiving setup...");
             Setup.Request setup = readJson(in, Setup.Request.class);
-            GameState state = gameStateFactory.create(setup);
+            SiteMapping siteMapping = new SiteMapping(setup.getMap());
+            GameState state = gameStateFactory.create(siteMapping.toInternal(setup));
+            state.setSiteMapping(siteMapping);
             Setup.Response setupResponse = new Setup.Response(setup.getPunter());
             if (setup.getSettings() != null && setup.getSettings().isFutures()) {
                 Future[] futures = solver.getFutures(state);
-                setupResponse.setFutures(futures);
+                setupResponse.setFutures(siteMapping.toExternal(futures));
                 state.setFutures(futures);
             }
             writeJson(out, setupResponse);
@@ -203,7 +213,8 @@ public class Punter {
             int punterId = state.getMyPunterId();
             while (state.getRemainingNumberOfMoves() > 0) {
                 Gameplay.Request moveRequest = readJson(in, Gameplay.Request.class);
-                state.applyMoves(moveRequest.getMove().moves);
+                awaitSolver();
+                state.applyMoves(siteMapping.toInternal(moveRequest.getMove().moves));
                 for (Move move : moveRequest.getMove().moves) {
                     Move.ClaimData claim = move.getClaim();
                     if (claim != null) {
@@ -216,6 +227,7 @@ public class Punter {
                 Move move = getNextMoveWithTimeout(state, TIME_OUT_MS);
                 if (move == null) move = Move.pass(state.getMyPunterId());
                 state.movePerformed();
+                move = siteMapping.toExternal(move);
                 writeJson(out, move);
                 Move.ClaimData claim1 = move.getClaim();
                 if (claim1 != null) {
@@ -228,24 +240,36 @@ public class Punter {
 
             LOG.info("Receiving scoring info...");
             Scoring.Data scoring = readJson(in, Scoring.class).stop;
-            state.applyMoves(scoring.moves);
+            awaitSolver();
+            state.applyMoves(siteMapping.toInternal(scoring.moves));
             LOG.info("number of own rivers: {}", state.getOwnRivers().size());
             int myScore = scoring.scores.stream().filter(score -> score.punter == punterId).findFirst().get().score;
             int rank = numPunters - (int) scoring.scores.stream().filter(score -> score.score < myScore).count();
             LOG.info("RANKING {} / {} with {} points", rank, numPunters, myScore);
-//            scoring.scores.forEach(score -> {
-//                int computed = state.getScore(score.punter);
-//                if (score.score != computed) {
-//                    LOG.warn("score mismatch. Server: {}, computed: {}", score.score, computed);
-//                }
-//            });
+            // futures are not included in our scores
+            if (!state.areFuturesActive()) {
+                scoring.scores.forEach(score -> {
+                    int computed = state.getScore(score.punter);
+                    if (score.score != computed) {
+                        LOG.warn("score mismatch for {}. Server: {}, computed: {}", score.punter, score.score, computed);
+                    }
+                });
+            }
             record.println("]}");
             return scoring;
         }
     }
 
     private Move getNextMoveWithTimeout(GameState state, int timeOutMs) {
-        java.util.concurrent.Future<Move> future = timeoutExecutorService.submit(() -> solver.getNextMove(state));
+        CountDownLatch done = new CountDownLatch(1);
+        solverDone = done;
+        java.util.concurrent.Future<Move> future = timeoutExecutorService.submit(() -> {
+            try {
+                return solver.getNextMove(state);
+            } finally {
+                done.countDown();
+            }
+        });
         try {
             return future.get(timeOutMs, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
@@ -263,6 +287,24 @@ public class Punter {
         }
     }
 
+    /**
+     * Wait until a solver call that timed out has unwound, so that it no
+     * longer has tentative moves on the state when new moves are applied.
+     * A solver that ignores the interrupt for another {@link #TIME_OUT_MS}
+     * would corrupt the state, so the game is abandoned instead.
+     */
+    private void awaitSolver() {
+        try {
+            if (!solverDone.await(TIME_OUT_MS, TimeUnit.MILLISECONDS)) {
+                LOG.error("Solver did not stop within {} ms after timing out", TIME_OUT_MS);
+                throw new IllegalStateException("solver still running");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
     private void runOfflineMove(InputStream in, PrintStream out) throws IOException {
 
         // 0. Handshake
@@ -280,12 +322,14 @@ public class Punter {
         if (req instanceof Setup.Request) {
             Setup.Request setup = (Setup.Request) req;
             LOG.info("Received setup request");
-            GameState state = gameStateFactory.create(setup);
+            SiteMapping siteMapping = new SiteMapping(setup.getMap());
+            GameState state = gameStateFactory.create(siteMapping.toInternal(setup));
+            state.setSiteMapping(siteMapping);
             Setup.Response setupResponse = new Setup.Response(setup.getPunter());
             setupResponse.setState(state);
             if (setup.getSettings() != null && setup.getSettings().isFutures()) {
                 Future[] futures = solver.getFutures(state);
-                setupResponse.setFutures(futures);
+                setupResponse.setFutures(siteMapping.toExternal(futures));
                 state.setFutures(futures);
             }
             writeJson(out, setupResponse);
@@ -298,10 +342,12 @@ public class Punter {
             if (state == null) {
                 throw new ProtocolException("state not supplied in offline mode");
             }
-            state.applyMoves(moveRequest.getMove().moves);
+            SiteMapping siteMapping = state.getSiteMapping();
+            state.applyMoves(siteMapping.toInternal(moveRequest.getMove().moves));
             Move move = getNextMoveWithTimeout(state, TIME_OUT_MS);
             if (move == null) move = Move.pass(state.getMyPunterId());
             state.movePerformed();
+            move = siteMapping.toExternal(move);
             move.setState(state);
             writeJson(out, move);
             LOG.info("Move and new state: {}", move);
@@ -0,0 +1,122 @@
+package io;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Translation between the site IDs used in the protocol and dense
+ * internal site IDs 0..V-1.
+ *
+ * Internal IDs are assigned in ascending order of the protocol IDs,
+ * so normalized rivers stay normalized. Everything behind the game
+ * state uses internal IDs; moves and futures are translated when
+ * they are received from or sent to the server.
+ */
+public class SiteMapping {
+
+    /** Protocol ID for each internal ID, sorted. */
+    private int[] ids;
+
+    public SiteMapping() {}
+
+    public SiteMapping(Map map) {
+        Set<Integer> siteIds = new HashSet<>();
+        for (Site site : map.getSites()) {
+            siteIds.add(site.getId());
+        }
+        for (River river : map.getRivers()) {
+            siteIds.add(river.getSource());
+            siteIds.add(river.getTarget());
+        }
+        siteIds.addAll(map.getMines());
+        ids = siteIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    public int[] getIds() {
+        return ids;
+    }
+
+    public void setIds(int[] ids) {
+        this.ids = ids;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int toInternal(int siteId) {
+        int i = Arrays.binarySearch(ids, siteId);
+        if (i < 0) {
+            throw new IllegalArgumentException("unknown site " + siteId);
+        }
+        return i;
+    }
+
+    public int toExternal(int siteId) {
+        return ids[siteId];
+    }
+
+    public Setup.Request toInternal(Setup.Request setup) {
+        Set<Site> sites = new HashSet<>();
+        for (int i = 0; i < ids.length; i++) {
+            sites.add(new Site(i));
+        }
+        Set<River> rivers = new HashSet<>();
+        for (River river : setup.getMap().getRivers()) {
+            River r = new River(toInternal(river.getSource()), toInternal(river.getTarget()));
+            r.setOwner(river.getOwner());
+            r.setOption(river.getOption());
+            rivers.add(r);
+        }
+        Set<Integer> mines = new HashSet<>();
+        for (int mine : setup.getMap().getMines()) {
+            mines.add(toInternal(mine));
+        }
+        Setup.Request result = new Setup.Request();
+        result.setPunter(setup.getPunter());
+        result.setPunters(setup.getPunters());
+        result.setSettings(setup.getSettings());
+        result.setMap(new Map(sites, rivers, mines));
+        return result;
+    }
+
+    public List<Move> toInternal(List<Move> moves) {
+        List<Move> result = new ArrayList<>(moves.size());
+        for (Move move : moves) {
+            result.add(translate(move, this::toInternal));
+        }
+        return result;
+    }
+
+    public Move toExternal(Move move) {
+        return translate(move, this::toExternal);
+    }
+
+    public Future[] toExternal(Future[] futures) {
+        Future[] result = new Future[futures.length];
+        for (int i = 0; i < futures.length; i++) {
+            result[i] = new Future(toExternal(futures[i].getSource()), toExternal(futures[i].getTarget()));
+        }
+        return result;
+    }
+
+    private static Move translate(Move move, IntUnaryOperator site) {
+        if (move.getClaim() != null) {
+            Move.ClaimData claim = move.getClaim();
+            return Move.claim(claim.punter, new River(site.applyAsInt(claim.source), site.applyAsInt(claim.target)));
+        }
+        if (move.getOption() != null) {
+            Move.ClaimData option = move.getOption();
+            return Move.option(option.punter, new River(site.applyAsInt(option.source), site.applyAsInt(option.target)));
+        }
+        if (move.getSplurge() != null) {
+            Move.SplurgeData splurge = move.getSplurge();
+            List<Integer> route = new ArrayList<>(splurge.route.size());
+            for (int s : splurge.route) {
+                route.add(site.applyAsInt(s));
+            }
+            return Move.splurge(splurge.punter, route);
+        }
+        return Move.pass(move.getPass().punter);
+    }
+}
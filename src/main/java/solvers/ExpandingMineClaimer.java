@@ -19,9 +19,8 @@ public class ExpandingMineClaimer implements Solver {
 
         for (Integer mine : mines) {
             if (Thread.currentThread().isInterrupted()) return null;
-            Set<River> ownRivers = state.getOwnRiversTouching(mine);
             //if we already have a river at that mine, we dont want another one
-            if (ownRivers.size() > 0) continue;
+            if (state.getOwnDegree(mine) > 0) continue;
             Set<River> mineRivers = state.getUnclaimedRiversTouching(mine);
             // if there is nothing free at that mine, continue
             if (mineRivers.isEmpty()) continue;
@@ -30,7 +29,7 @@ public class ExpandingMineClaimer implements Solver {
             int expansionOptions = 0;
             for (River river : mineRivers) {
                 int otherSite = river.getOpposite(mine);
-                int opts = state.getUnclaimedRiversTouching(otherSite).size();
+                int opts = state.getUnclaimedDegree(otherSite);
                 if (best == null || opts > expansionOptions) {
                     best = river;
                     expansionOptions = opts;
@@ -45,8 +44,8 @@ public class ExpandingMineClaimer implements Solver {
         River best = null;
         int bestPoints = 0;
         for (River river : freeRivers) {
-            boolean connectedSource = (state.getOwnRiversTouching(river.getSource()).size() > 0);
-            boolean connectedTarget = (state.getOwnRiversTouching(river.getTarget()).size() > 0);
+            boolean connectedSource = (state.getOwnDegree(river.getSource()) > 0);
+            boolean connectedTarget = (state.getOwnDegree(river.getTarget()) > 0);
 
             //ignore those unconnected to our current rivers
             if (!connectedSource && ! connectedTarget) continue;
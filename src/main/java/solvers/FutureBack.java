@@ -3,6 +3,7 @@ package solvers;
 import io.Future;
 import io.Move;
 import state.GameState;
+import state.OpenRoute;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -20,20 +21,18 @@ public class FutureBack implements Solver {
     @Override
     public Move getNextMove(GameState state) {
         setBestChoice(Move.claim(state.getMyPunterId(), state.getUnclaimedRivers().iterator().next()));
-        Future best = null;
-        int shortest = Integer.MAX_VALUE;
+        OpenRoute best = null;
         if (state.getFutures() != null) {
             for (Future future : state.getFutures()) {
                 if (Thread.currentThread().isInterrupted()) return null;
                 if (state.isFutureComplete(future)) continue;
-                int steps = state.missingStepsForFuture(future);
-                if (steps == -1) continue;
-                if (best == null || steps < shortest) {
-                    shortest = steps;
-                    best = future;
+                OpenRoute route = state.getFutureRoute(future);
+                if (route.getMissingSteps() == -1) continue;
+                if (best == null || route.getMissingSteps() < best.getMissingSteps()) {
+                    best = route;
                 }
             }
-            if (best != null) return Move.claim(state.getMyPunterId(), state.nextStepForFuture(best));
+            if (best != null) return Move.claim(state.getMyPunterId(), best.getNextStep());
         }
 
         setBestChoice(null);
@@ -54,7 +53,7 @@ public class FutureBack implements Solver {
         if (risk == 0) return null;
         for (int site : state.getSites()) {
             if (state.isMine(site)) continue;
-            if (state.getShortestRoute(mine, site).size() == risk) {
+            if (state.getShortestRouteLength(mine, site) == risk) {
                 return new Future(mine, site);
             }
         }
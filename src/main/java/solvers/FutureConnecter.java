@@ -4,6 +4,7 @@ import io.Future;
 import io.Move;
 import io.River;
 import state.GameState;
+import state.OpenRoute;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -21,20 +22,18 @@ public class FutureConnecter implements Solver {
     @Override
     public Move getNextMove(GameState state) {
         setBestChoice(Move.claim(state.getMyPunterId(), state.getUnclaimedRivers().iterator().next()));
-        Future best = null;
-        int shortest = Integer.MAX_VALUE;
+        OpenRoute best = null;
         if (state.getFutures() != null) {
             for (Future future : state.getFutures()) {
                 if (Thread.currentThread().isInterrupted()) return null;
                 if (state.isFutureComplete(future)) continue;
-                int steps = state.missingStepsForFuture(future);
-                if (steps == -1) continue;
-                if (best == null || steps < shortest) {
-                    shortest = steps;
-                    best = future;
+                OpenRoute route = state.getFutureRoute(future);
+                if (route.getMissingSteps() == -1) continue;
+                if (best == null || route.getMissingSteps() < best.getMissingSteps()) {
+                    best = route;
                 }
             }
-            if (best != null) return Move.claim(state.getMyPunterId(), state.nextStepForFuture(best));
+            if (best != null) return Move.claim(state.getMyPunterId(), best.getNextStep());
         }
 
         setBestChoice(null);
@@ -76,7 +75,7 @@ public class FutureConnecter implements Solver {
         for (River river : rivers) {
             int opposite = river.getOpposite(site1);
             if (mines.contains(opposite)) continue;
-            if (state.getShortestRoute(mine, opposite).size() <= 1) continue;
+            if (state.getShortestRouteLength(mine, opposite) <= 1) continue;
             long degree = state.getDegree(opposite);
             if (site2 == -1 || degree  > score2) {
                 site2 = opposite;
@@ -92,7 +91,7 @@ public class FutureConnecter implements Solver {
         for (River river : rivers) {
             int opposite = river.getOpposite(site2);
             if (mines.contains(opposite)) continue;
-            if (state.getShortestRoute(mine, opposite).size() <= 2) continue;
+            if (state.getShortestRouteLength(mine, opposite) <= 2) continue;
             long degree = state.getDegree(opposite);
             if (site3 == -1 || degree  > score3) {
                 site3 = opposite;
@@ -108,7 +107,7 @@ public class FutureConnecter implements Solver {
         for (River river : rivers) {
             int opposite = river.getOpposite(site3);
             if (mines.contains(opposite)) continue;
-            if (state.getShortestRoute(mine, opposite).size() <= 3) continue;
+            if (state.getShortestRouteLength(mine, opposite) <= 3) continue;
             long degree = state.getDegree(opposite);
             if (site4 == -1 || degree  > score4) {
                 site4 = opposite;
@@ -4,6 +4,7 @@ import io.Future;
 import io.Move;
 import io.River;
 import state.GameState;
+import state.MineRoutes;
 
 import java.util.BitSet;
 import java.util.Collection;
@@ -22,12 +23,12 @@ public class MineConnectClaimer implements Solver {
         Set<Integer> mines = state.getMines();
         BitSet ownSites = bitSetFrom(state.getOwnRivers());
 
-        for (int mineS : mines) {
-            for (int mineT : mines) {
+        MineRoutes mineRoutes = state.getMineRoutes();
+        for (int i = 0; i < mineRoutes.size(); i++) {
+            for (int j = 0; j < mineRoutes.size(); j++) {
                 if (Thread.currentThread().isInterrupted()) return null;
-                if (mineS == mineT) continue;
-                if (state.canReach(state.getMyPunterId(), mineS, mineT)) continue;
-                List<River> path = state.getShortestOpenRoute(state.getMyPunterId(), mineS, mineT);
+                if (mineRoutes.getMissingSteps(i, j) <= 0) continue;
+                List<River> path = mineRoutes.getRoute(i, j);
                 River best = null;
                 int score = 0;
                 for (River river : path) {
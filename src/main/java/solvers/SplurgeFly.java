@@ -6,6 +6,8 @@ import io.River;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import state.GameState;
+import state.MineRoutes;
+import state.OpenRoute;
 
 import java.util.*;
 
@@ -93,7 +95,7 @@ public class SplurgeFly implements Solver {
         }
 
         //if we can connect two mines which are not yet connected, work on that
-        move = getMineConnectionStep(state, mines);
+        move = getMineConnectionStep(state);
         if (move != null) return move;
 
         //if we have no other idea, get the one which gives the most points
@@ -109,9 +111,9 @@ public class SplurgeFly implements Solver {
         int bestPoints = 0;
         for (River river : freeRivers) {
             if (Thread.currentThread().isInterrupted()) return null;
-            boolean connectedSource = (state.getOwnRiversTouching(river.getSource()).size() > 0)
+            boolean connectedSource = (state.getOwnDegree(river.getSource()) > 0)
                     || mines.contains(river.getSource());
-            boolean connectedTarget = (state.getOwnRiversTouching(river.getTarget()).size() > 0)
+            boolean connectedTarget = (state.getOwnDegree(river.getTarget()) > 0)
                     || mines.contains(river.getTarget());
 
             //ignore those unconnected to our current rivers
@@ -164,26 +166,23 @@ public class SplurgeFly implements Solver {
         }
     }
 
-    private Move getMineConnectionStep(GameState state, Set<Integer> mines) {
+    private Move getMineConnectionStep(GameState state) {
         if (state.areSplurgesActive()) {
             int credit = state.getSplurgeCredits(state.getMyPunterId());
-            java.util.Map<IntPair, Integer> canClaimNow = new HashMap<>(); // not really a river, just two sites
+            java.util.Map<IntPair, Integer> canClaimNow = new HashMap<>(); // pairs of mine numbers
             boolean canClaimAtOnceLater = false;
 
-            for (int mineS : mines) {
-                for (int mineT : mines) {
+            MineRoutes mineRoutes = state.getMineRoutes();
+            for (int i = 0; i < mineRoutes.size(); i++) {
+                for (int j = 0; j < mineRoutes.size(); j++) {
                     if (Thread.currentThread().isInterrupted()) return null;
-                    if (mineS == mineT) continue;
-                    if (state.canReach(state.getMyPunterId(), mineS, mineT)) continue;
-                    List<River> path = state.getShortestOpenRoute(state.getMyPunterId(), mineS, mineT);
-                    if (path.isEmpty()) continue;
-                    int missing = (int) path.stream().filter(river -> !river.isClaimed()
-                            || (state.areOptionsActive() && river.canOption(state.getMyPunterId()))).count();
-                    if (hasSingleOpenFragment(state, mineS, mineT)) {
+                    int missing = mineRoutes.getMissingSteps(i, j);
+                    if (missing <= 0) continue;
+                    if (hasSingleOpenFragment(state, mineRoutes.getRoute(i, j))) {
                         if (missing <= credit + 1) {
                             IntPair pair = new IntPair();
-                            pair.first = mineS;
-                            pair.second = mineT;
+                            pair.first = i;
+                            pair.second = j;
                             canClaimNow.put(pair, missing);
                         } else {
                             canClaimAtOnceLater = true;
@@ -194,8 +193,9 @@ public class SplurgeFly implements Solver {
             //if we can claim an entire path now, lets take the longest and do it
             if (!canClaimNow.isEmpty()) {
                 IntPair longest = Collections.max(canClaimNow.entrySet(), Comparator.comparingInt(Map.Entry::getValue)).getKey();
-                LOG.info("Claim path between mines from {} to {}", longest.first, longest.second);
-                return getSplurge(state, longest.first, longest.second);
+                int mineS = mineRoutes.getMine(longest.first);
+                LOG.info("Claim path between mines from {} to {}", mineS, mineRoutes.getMine(longest.second));
+                return getSplurge(state, mineS, mineRoutes.getRoute(longest.first, longest.second));
             }
             //if we can claim an entire future later, lets wait and get splurge credits unless we are running out of time
             if (canClaimAtOnceLater && enoughMovesLeft(state)) return Move.pass(state.getMyPunterId());
@@ -204,12 +204,11 @@ public class SplurgeFly implements Solver {
 
         List<River> bestPath = null;
         int shortest = Integer.MAX_VALUE;
-        for (int mineS : mines) {
-            for (int mineT : mines) {
-                if (mineS == mineT) continue;
-                if (state.canReach(state.getMyPunterId(), mineS, mineT)) continue;
-                List<River> path = state.getShortestOpenRoute(state.getMyPunterId(), mineS, mineT);
-                if (path.isEmpty()) continue;
+        MineRoutes mineRoutes = state.getMineRoutes();
+        for (int i = 0; i < mineRoutes.size(); i++) {
+            for (int j = 0; j < mineRoutes.size(); j++) {
+                if (mineRoutes.getMissingSteps(i, j) <= 0) continue;
+                List<River> path = mineRoutes.getRoute(i, j);
                 int missing = (int) path.stream().filter(river -> !river.isClaimed()).count();
                 if (bestPath == null || missing < shortest) {
                     bestPath = path;
@@ -231,19 +230,20 @@ public class SplurgeFly implements Solver {
     private Move getNextFutureStep(GameState state) {
         if (state.areSplurgesActive()) {
             int credit = state.getSplurgeCredits(state.getMyPunterId());
-            java.util.Map<Future, Integer> canClaimNow = new HashMap<>();
+            java.util.Map<Future, OpenRoute> canClaimNow = new HashMap<>();
             boolean canClaimAtOnceLater = false;
 
             if (state.getFutures() != null) {
                 for (Future future : state.getFutures()) {
                     if (Thread.currentThread().isInterrupted()) return null;
                     if (state.isFutureComplete(future)) continue;
-                    int steps = state.missingStepsForFuture(future);
+                    OpenRoute route = state.getFutureRoute(future);
+                    int steps = route.getMissingSteps();
                     if (steps == -1) continue;
                     //check if we can claim the entire path now / later at once
-                    if (hasSingleOpenFragment(state, future.getSource(), future.getTarget())) {
+                    if (hasSingleOpenFragment(state, route.getRivers())) {
                         if (steps <= credit + 1) {
-                            canClaimNow.put(future, steps);
+                            canClaimNow.put(future, route);
                         } else {
                             canClaimAtOnceLater = true;
                         }
@@ -251,9 +251,10 @@ public class SplurgeFly implements Solver {
                 }
                 //if we can claim an entire future now, lets take the longest and do it
                 if (canClaimNow.size() > 0) {
-                    Future longest = Collections.max(canClaimNow.entrySet(), Comparator.comparingInt(Map.Entry::getValue)).getKey();
+                    Future longest = Collections.max(canClaimNow.entrySet(),
+                            Comparator.comparingInt(e -> e.getValue().getMissingSteps())).getKey();
                     LOG.info("Claim future from {} to {}", longest.getSource(), longest.getTarget());
-                    return getSplurge(state, longest.getSource(), longest.getTarget());
+                    return getSplurge(state, longest.getSource(), canClaimNow.get(longest).getRivers());
                 }
                 //if we can claim an entire future later, lets wait and get splurge credits
                 //unless there are too few turnes left
@@ -262,19 +263,17 @@ public class SplurgeFly implements Solver {
         }
 
         //if splurges are not enabled or there is nothing to splurge for, we just do single steps
-        Future bestFuture = null;
-        int shortest = Integer.MAX_VALUE;
+        OpenRoute bestFuture = null;
         if (state.getFutures() != null) {
             for (Future future : state.getFutures()) {
                 if (state.isFutureComplete(future)) continue;
-                int steps = state.missingStepsForFuture(future);
-                if (steps == -1) continue;
-                if (bestFuture == null || steps < shortest) {
-                    shortest = steps;
-                    bestFuture = future;
+                OpenRoute route = state.getFutureRoute(future);
+                if (route.getMissingSteps() == -1) continue;
+                if (bestFuture == null || route.getMissingSteps() < bestFuture.getMissingSteps()) {
+                    bestFuture = route;
                 }
             }
-            if (bestFuture != null) return Move.claim(state.getMyPunterId(), state.nextStepForFuture(bestFuture));
+            if (bestFuture != null) return Move.claim(state.getMyPunterId(), bestFuture.getNextStep());
         }
         return null;
     }
@@ -287,11 +286,14 @@ public class SplurgeFly implements Solver {
         return true;
     }
 
-    private Move getSplurge(GameState state, int sourceSite, int targetSite) {
+    /**
+     * Splurge along the first open fragment of the route, which starts at sourceSite.
+     */
+    private Move getSplurge(GameState state, int sourceSite, List<River> route) {
         List<Integer> sites = new ArrayList<>();
         int source = sourceSite;
         int target;
-        for (River river : state.getShortestOpenRoute(state.getMyPunterId() ,sourceSite, targetSite)) {
+        for (River river : route) {
             target = river.getOpposite(source);
             if (!river.isClaimed() || (state.areOptionsActive() && river.canOption(state.getMyPunterId()))) {
                 if (sites.isEmpty()) sites.add(source);
@@ -307,8 +309,7 @@ public class SplurgeFly implements Solver {
         return null;
     }
 
-    private boolean hasSingleOpenFragment(GameState state, int source, int target) {
-        List<River> path = state.getShortestOpenRoute(state.getMyPunterId(), source, target);
+    private boolean hasSingleOpenFragment(GameState state, List<River> path) {
         boolean startFound = false;
         boolean endFound = false;
         for (River river : path) {
@@ -326,7 +327,7 @@ public class SplurgeFly implements Solver {
     private Move getSingleMineRiver(GameState state, Set<Integer> mines) {
         if (mines.size() == 1) {
             int mine = mines.iterator().next();
-            if (state.getOwnRiversTouching(mine).size() < 10) {
+            if (state.getOwnDegree(mine) < 10) {
                 Set<River> rivers = state.getOpenRiversTouching(mine);
                 if (!rivers.isEmpty()) {
                     return Move.claim(state.getMyPunterId(), rivers.iterator().next());
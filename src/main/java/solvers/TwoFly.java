@@ -6,6 +6,8 @@ import io.River;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import state.GameState;
+import state.MineRoutes;
+import state.OpenRoute;
 
 import java.util.HashSet;
 import java.util.List;
@@ -26,26 +28,24 @@ public class TwoFly implements Solver {
     public Move getNextMove(GameState state) {
         Set<River> freeRivers = state.getUnclaimedRivers();
         setBestChoice(Move.claim(state.getMyPunterId(), state.getUnclaimedRivers().iterator().next()));
-        Future bestFuture = null;
-        int shortest = Integer.MAX_VALUE;
+        OpenRoute bestFuture = null;
         if (state.getFutures() != null) {
             for (Future future : state.getFutures()) {
                 if (Thread.currentThread().isInterrupted()) return null;
                 if (state.isFutureComplete(future)) continue;
-                int steps = state.missingStepsForFuture(future);
-                if (steps == -1) continue;
-                if (bestFuture == null || steps < shortest) {
-                    shortest = steps;
-                    bestFuture = future;
+                OpenRoute route = state.getFutureRoute(future);
+                if (route.getMissingSteps() == -1) continue;
+                if (bestFuture == null || route.getMissingSteps() < bestFuture.getMissingSteps()) {
+                    bestFuture = route;
                 }
             }
-            if (bestFuture != null) return Move.claim(state.getMyPunterId(), state.nextStepForFuture(bestFuture));
+            if (bestFuture != null) return Move.claim(state.getMyPunterId(), bestFuture.getNextStep());
         }
 
         Set<Integer> mines = state.getMines();
         if (mines.size() == 1) {
             int mine = mines.iterator().next();
-            if (state.getOwnRiversTouching(mine).size() < 10) {
+            if (state.getOwnDegree(mine) < 10) {
                 Set<River> rivers = state.getUnclaimedRiversTouching(mine);
                 if (!rivers.isEmpty()) {
                     return Move.claim(state.getMyPunterId(), rivers.iterator().next());
@@ -54,14 +54,13 @@ public class TwoFly implements Solver {
         }
 
         List<River> bestPath = null;
-        shortest = Integer.MAX_VALUE;
-        for (int mineS : mines) {
+        int shortest = Integer.MAX_VALUE;
+        MineRoutes mineRoutes = state.getMineRoutes();
+        for (int i = 0; i < mineRoutes.size(); i++) {
             if (Thread.currentThread().isInterrupted()) return null;
-            for (int mineT : mines) {
-                if (mineS == mineT) continue;
-                if (state.canReach(state.getMyPunterId(), mineS, mineT)) continue;
-                List<River> path = state.getShortestOpenRoute(state.getMyPunterId(), mineS, mineT);
-                if (path.isEmpty()) continue;
+            for (int j = 0; j < mineRoutes.size(); j++) {
+                if (mineRoutes.getMissingSteps(i, j) <= 0) continue;
+                List<River> path = mineRoutes.getRoute(i, j);
                 int missing = (int) path.stream().filter(river -> !river.isClaimed()).count();
                 if (bestPath == null || missing < shortest) {
                     bestPath = path;
@@ -83,9 +82,9 @@ public class TwoFly implements Solver {
         int bestPoints = 0;
         for (River river : freeRivers) {
             if (Thread.currentThread().isInterrupted()) return null;
-            boolean connectedSource = (state.getOwnRiversTouching(river.getSource()).size() > 0)
+            boolean connectedSource = (state.getOwnDegree(river.getSource()) > 0)
                     || mines.contains(river.getSource());
-            boolean connectedTarget = (state.getOwnRiversTouching(river.getTarget()).size() > 0)
+            boolean connectedTarget = (state.getOwnDegree(river.getTarget()) > 0)
                     || mines.contains(river.getTarget());
 
             //ignore those unconnected to our current rivers
@@ -136,7 +135,7 @@ public class TwoFly implements Solver {
         int shortest = Integer.MAX_VALUE;
         for (int candidate : mines) {
             if (candidate == mine) continue;
-            int distance = state.getShortestRoute(mine, candidate).size();
+            int distance = state.getShortestRouteLength(mine, candidate);
             if (distance < shortest && distance > 1) {
                 target = candidate;
                 shortest = distance;
@@ -10,11 +10,15 @@ import org.slf4j.LoggerFactory;
 import solvers.RandomClaimer;
 import solvers.Solver;
 import state.GameState;
+import state.GameStateListener;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class HeuristicSolver implements Solver {
@@ -35,6 +39,98 @@ public class HeuristicSolver implements Solver {
 
     private final Multimap<RiverValue, River> candidates = HashMultimap.create();
 
+    /**
+     * Open rivers touching a mine or one of my sites. Kept up to date at the
+     * start of each move from the rivers the state reported as changed.
+     */
+    private final Set<River> frontier = new HashSet<>();
+    private GameState frontierState;
+    /** Indices of rivers changed since the frontier was last updated, filled by the listener. */
+    private final List<Integer> changedRivers = new ArrayList<>();
+
+    private final GameStateListener frontierRecorder = new GameStateListener() {
+        @Override
+        public void riverClaimed(int punter, int river, boolean splurge) {
+            record(river);
+        }
+
+        @Override
+        public void riverOptioned(int punter, int river, boolean splurge) {
+            record(river);
+        }
+
+        @Override
+        public void riverReleased(int punter, int river) {
+            record(river);
+        }
+
+        private void record(int river) {
+            synchronized (changedRivers) {
+                changedRivers.add(river);
+            }
+        }
+    };
+
+    /**
+     * Bring the frontier up to date with the state, on the solver thread.
+     * It is rebuilt when the state object changes.
+     */
+    private void updateFrontier(GameState state) {
+        if (state != frontierState) {
+            if (frontierState != null) {
+                frontierState.removeListener(frontierRecorder);
+            }
+            synchronized (changedRivers) {
+                changedRivers.clear();
+            }
+            frontierState = state;
+            frontier.clear();
+            for (int mine : state.getMines()) {
+                extendFrontier(mine);
+            }
+            for (River river : state.getOwnRivers()) {
+                extendFrontier(river.getSource());
+                extendFrontier(river.getTarget());
+            }
+            state.addListener(frontierRecorder);
+            return;
+        }
+        int[] changed;
+        synchronized (changedRivers) {
+            changed = changedRivers.stream().mapToInt(Integer::intValue).toArray();
+            changedRivers.clear();
+        }
+        for (int index : changed) {
+            River river = state.getRiverByIndex(index);
+            if (river.canUse(state.getMyPunterId())) {
+                extendFrontier(river.getSource());
+                extendFrontier(river.getTarget());
+            }
+            if (isOpen(river) && (isFrontierSite(river.getSource()) || isFrontierSite(river.getTarget()))) {
+                frontier.add(river);
+            } else {
+                frontier.remove(river);
+            }
+        }
+    }
+
+    private void extendFrontier(int site) {
+        for (River river : frontierState.getRiversTouching(site)) {
+            if (isOpen(river)) {
+                frontier.add(river);
+            }
+        }
+    }
+
+    private boolean isFrontierSite(int site) {
+        return frontierState.isMine(site) || frontierState.getOwnDegree(site) > 0;
+    }
+
+    /** Can I still claim or option the river? */
+    private boolean isOpen(River river) {
+        return !river.isClaimed() || (frontierState.areOptionsActive() && river.canOption(frontierState.getMyPunterId()));
+    }
+
     private void addCandidate(RiverValue value, River candidate) {
         synchronized (candidates) {
             if (bestMoveValue == null || value.compareTo(bestMoveValue) < 0) {
@@ -46,9 +142,11 @@ public class HeuristicSolver implements Solver {
     }
 
 
-    private void classifyUnclaimedRivers(Collection<River> rivers) {
-        for (River river : rivers) {
+    private void classifyFrontier() {
+        boolean options = state.areOptionsActive() && state.getRemainingOptions() > 0;
+        for (River river : frontier) {
             if (Thread.currentThread().isInterrupted()) return;
+            if (river.isClaimed() && !(options && river.canOption(state.getMyPunterId()))) continue;
             if (isClaimed(river.getSource())) {
                 if (isClaimed(river.getTarget())) {
                     if (!state.canReach(state.getMyPunterId(), river.getSource(), river.getTarget())) {
@@ -91,10 +189,8 @@ public class HeuristicSolver implements Solver {
     @Override
     public Move getNextMove(GameState state) {
         reset(state);
-        classifyUnclaimedRivers(state.getUnclaimedRivers());
-        if (state.areOptionsActive() && state.getRemainingOptions() > 0) {
-            classifyUnclaimedRivers(state.getAvailableOptions());
-        }
+        updateFrontier(state);
+        classifyFrontier();
 
         RiverValue bestValue = getBestValue();
         if (bestValue != null) {
@@ -172,7 +268,7 @@ public class HeuristicSolver implements Solver {
      * Is this site touched by a river that is claimed by me?
      */
     private boolean isClaimed(int site) {
-        return !state.getOwnRiversTouching(site).isEmpty();
+        return state.getOwnDegree(site) > 0;
     }
 
     private long getDegreeQuality(River r) {
@@ -8,85 +8,234 @@ import org.slf4j.LoggerFactory;
 import solvers.Solver;
 import state.GameState;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Flat Monte Carlo: plays random games after each of my possible moves.
+ *
+ * The other punters and my later moves follow a {@link RolloutPolicy}, by
+ * default {@link RolloutPolicy#UNIFORM}. {@link RolloutPolicy#FRONTIER}
+ * with some randomness is available while it is being tuned.
+ *
+ * Besides the result of each first move, every river I claim in a game is
+ * credited with its result as if it had been my first move (all moves as
+ * first, AMAF). Moves are ranked by a blend of both means, which relies on
+ * the AMAF mean while a move has few samples of its own (RAVE).
+ *
+ * The games are played on a {@link RolloutEngine} by the calling thread and
+ * by a pool of worker threads, each with its own copy of the engine and its
+ * own random numbers. Their counters are merged at the deadline; until then,
+ * {@link #getBestChoice()} has the best move of the calling thread.
+ */
 public class MonteCarloSolver implements Solver {
 
     private static final Logger LOG = LoggerFactory.getLogger(MonteCarloSolver.class);
 
+    /** Number of games between updates of the best move so far. */
+    private static final int PUBLISH_INTERVAL = 32;
+    /** Probability of a random claim for the frontier policy. */
+    public static final double FRONTIER_EPSILON = 0.2;
+    private static final int NUM_CANDIDATES = 4;
+    /** Number of samples of its own at which a move's AMAF mean gets half the weight. */
+    static final double RAVE_EQUIVALENCE = 1000;
+
     private final long timeout;
-    private final Random rng;
+    private final SplittableRandom rng;
+    private final int numThreads;
+    private final ExecutorService workers;
+    private final RolloutPolicy policy;
+    private final double epsilon;
 
     private Move bestSoFar = null;
 
     private int punter = -1;
     private River[] rivers;
-    private int[] origOwner;
-    private int[] numSamples;
-    private int[] score;
+    private Counters counters;
+
+    /** Samples and score sums per unclaimed river, as first move and AMAF. */
+    static final class Counters {
+        final int[] numSamples;
+        final long[] score;
+        final int[] numAmafSamples;
+        final long[] amafScore;
+
+        Counters(int n) {
+            numSamples = new int[n];
+            score = new long[n];
+            numAmafSamples = new int[n];
+            amafScore = new long[n];
+        }
+
+        void add(Counters other) {
+            for (int i = 0; i < numSamples.length; i++) {
+                numSamples[i] += other.numSamples[i];
+                score[i] += other.score[i];
+                numAmafSamples[i] += other.numAmafSamples[i];
+                amafScore[i] += other.amafScore[i];
+            }
+        }
+
+        /** Mean score of the move, blending its own mean with its AMAF mean. */
+        double value(int i) {
+            if (numAmafSamples[i] == 0) {
+                return (numSamples[i] == 0) ? 0 : (double) score[i] / numSamples[i];
+            }
+            double amaf = (double) amafScore[i] / numAmafSamples[i];
+            if (numSamples[i] == 0) {
+                return amaf;
+            }
+            double beta = Math.sqrt(RAVE_EQUIVALENCE / (3 * numSamples[i] + RAVE_EQUIVALENCE));
+            return (1 - beta) * score[i] / numSamples[i] + beta * amaf;
+        }
+    }
 
     /**
+     * Use one thread per available processor.
      * @param timeout timeout in nanoseconds
      */
     public MonteCarloSolver(long timeout) {
+        this(timeout, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param timeout timeout in nanoseconds
+     * @param numThreads number of threads playing games, including the calling thread
+     */
+    public MonteCarloSolver(long timeout, int numThreads) {
+        this(timeout, numThreads, RolloutPolicy.UNIFORM, 1);
+    }
+
+    /**
+     * @param timeout timeout in nanoseconds
+     * @param numThreads number of threads playing games, including the calling thread
+     * @param policy chooses the claims in the games
+     * @param epsilon probability of a random claim instead of one by the policy, 1 for random games
+     */
+    public MonteCarloSolver(long timeout, int numThreads, RolloutPolicy policy, double epsilon) {
+        this.policy = policy;
+        this.epsilon = epsilon;
         this.timeout = 9 * timeout / 10;
-        this.rng = new Random();
+        this.rng = new SplittableRandom();
+        this.numThreads = Math.max(1, numThreads);
+        if (this.numThreads > 1) {
+            workers = Executors.newFixedThreadPool(this.numThreads - 1, r -> {
+                Thread t = new Thread(r, "mcts-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            workers = null;
+        }
     }
 
     @Override
     public Move getNextMove(GameState state) {
         long stopTime = System.nanoTime() + timeout;
-        int numMoves = state.getRemainingNumberOfMoves();
-        Collection<River> possibleMoves = state.getUnclaimedRivers();
         this.punter = state.getMyPunterId();
-        int n = possibleMoves.size();
+        RolloutEngine engine = new RolloutEngine(state);
+        engine.setPolicy(policy, epsilon, NUM_CANDIDATES);
+        int n = engine.getNumUnclaimed();
         rivers = new River[n];
-        origOwner = new int[n];
-        numSamples = new int[n];
-        score = new int[n];
-        int i = 0;
-        for (River r : possibleMoves) {
-            rivers[i] = r;
-            origOwner[i] = r.getOwner();
-            i++;
+        counters = new Counters(n);
+        int i;
+        for (i = 0; i < n; i++) {
+            rivers[i] = state.getRiverByIndex(engine.getUnclaimedRiver(i));
+        }
+        synchronized (this) {
+            bestSoFar = null;
+        }
+        if (n == 0) {
+            return null;
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        // claims by all punters until the end of the game
+        int numPlies = state.getRemainingNumberOfMoves() * state.getNumPunters();
+        List<java.util.concurrent.Future<Counters>> helpers = startWorkers(engine, numPlies, stopTime, stop);
+        try {
+            play(engine, numPlies, counters, rng.split(), stopTime, stop, true);
+        } finally {
+            stop.set(true);
         }
+        for (java.util.concurrent.Future<Counters> helper : helpers) {
+            try {
+                counters.add(helper.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                LOG.error("Monte Carlo worker failed", e.getCause());
+            }
+        }
+        int bestIndex = getBest();
+        synchronized (this) {
+            bestSoFar = makeMove(bestIndex);
+        }
+        report();
+        return bestSoFar;
+    }
+
+    /**
+     * Start the worker threads on copies of the engine.
+     * @return for each worker, its counters
+     */
+    private List<java.util.concurrent.Future<Counters>> startWorkers(RolloutEngine engine, int numPlies,
+                                                                    long stopTime, AtomicBoolean stop) {
+        List<java.util.concurrent.Future<Counters>> helpers = new ArrayList<>();
+        if (workers == null) {
+            return helpers;
+        }
+        for (int k = 1; k < numThreads; k++) {
+            SplittableRandom random = rng.split();
+            RolloutEngine copy = new RolloutEngine(engine);
+            helpers.add(workers.submit(() -> {
+                Counters own = new Counters(copy.getNumUnclaimed());
+                play(copy, numPlies, own, random, stopTime, stop, false);
+                return own;
+            }));
+        }
+        return helpers;
+    }
 
-        while (System.nanoTime() < stopTime) {
+    /**
+     * Play random games of numPlies claims by all punters until the stop time,
+     * counting the samples and scores per move in the given counters.
+     * @param publish whether to keep {@link #bestSoFar} up to date
+     */
+    private void play(RolloutEngine engine, int numPlies, Counters counters, SplittableRandom rng,
+                      long stopTime, AtomicBoolean stop, boolean publish) {
+        int n = engine.getNumUnclaimed();
+        int numPunters = engine.getNumPunters();
+        int[] scores = new int[numPunters];
+        int games = 0;
+        while (System.nanoTime() < stopTime && !stop.get() && !Thread.currentThread().isInterrupted()) {
             // choose random moves for all punters
             int myMove = rng.nextInt(n);
-            int myPunter = state.getMyPunterId();
-            // can use claim() because we need to invalidate score caches
-            state.applyMove(Move.claim(myPunter, rivers[myMove]));
-            for (i = 1; i < numMoves; i++) {
-                int punter = (myPunter + i) % state.getNumPunters();
-                int move = rng.nextInt(n);
-                claim(move, punter);
+            engine.play(myMove, punter, numPlies, rng, scores);
+            // assign score to first move chosen for this punter
+            counters.numSamples[myMove]++;
+            counters.score[myMove] += scores[punter];
+            // and to all moves of this punter, as if they had been first
+            for (int i = 0; i < engine.getNumClaimed(); i += numPunters) {
+                int move = engine.getClaimedNumber(i);
+                counters.numAmafSamples[move]++;
+                counters.amafScore[move] += scores[punter];
             }
-
-            // compute score (1 - numPunters)
-            int myScore = state.getScore(myPunter);
-            restoreOwners();
-            /*
-            int myScore = state.getNumPunters();
-            for (i = 0; i < state.getNumPunters(); i++) {
-                // LOG.info("score({}): {}", i, state.getScore(i));
-                if (i != myPunter && state.getScore(i) > own) {
-                    myScore--;
+            games++;
+            if (publish && games % PUBLISH_INTERVAL == 0) {
+                // write the best move so far into bestSoFar
+                int bestIndex = getBest();
+                synchronized (this) {
+                    bestSoFar = makeMove(bestIndex);
                 }
-            } */
-            // assign score to first move chosen for this punter
-            numSamples[myMove]++;
-            score[myMove] += myScore;
-            // write the best move so far into bestSoFar
-            int bestIndex = getBest();
-            synchronized (this) {
-                bestSoFar = makeMove(bestIndex);
             }
         }
-        report();
-        return bestSoFar;
     }
 
     private Move makeMove(int i) {
@@ -100,8 +249,8 @@ public class MonteCarloSolver implements Solver {
         double best = 0;
         int bestIndex = -1;
         for (int i = 0; i < rivers.length; i++) {
-            if (numSamples[i] > 0) {
-                double avgScore = (double) score[i] / numSamples[i];
+            if (counters.numSamples[i] > 0 || counters.numAmafSamples[i] > 0) {
+                double avgScore = counters.value(i);
                 if (avgScore > best) {
                     best = avgScore;
                     bestIndex = i;
@@ -113,34 +262,16 @@ public class MonteCarloSolver implements Solver {
 
     private void report() {
         int totalSamples = 0;
+        long totalAmafSamples = 0;
         for (int i = 0; i < rivers.length; i++) {
-            if (numSamples[i] > 0) {
-                totalSamples += numSamples[i];
-                double avgScore = (double) score[i] / numSamples[i];
-                LOG.info("mct: {}-{}: {} {}", rivers[i].getSource(), rivers[i].getTarget(), numSamples[i], avgScore);
-            }
-        }
-        LOG.info("Monte Carlo total samples: {}", totalSamples);
-    }
-
-    private void claim(int i, int punter) {
-        while (rivers[i].isClaimed()) {
-            i++;
-            if (i == rivers.length) {
-                i = 0;
-            }
-        }
-        rivers[i].setOwner(punter);
-    }
-
-    private void restoreOwners() {
-        for (int i = 0; i < rivers.length; i++) {
-            if (origOwner[i] >= 0) {
-                rivers[i].setOption(-1);
-            } else {
-                rivers[i].setOwner(-1);
+            if (counters.numSamples[i] > 0 || counters.numAmafSamples[i] > 0) {
+                totalSamples += counters.numSamples[i];
+                totalAmafSamples += counters.numAmafSamples[i];
+                LOG.info("mct: {}-{}: {} {} {}", rivers[i].getSource(), rivers[i].getTarget(),
+                        counters.numSamples[i], counters.numAmafSamples[i], counters.value(i));
             }
         }
+        LOG.info("Monte Carlo total samples: {}, AMAF samples: {}", totalSamples, totalAmafSamples);
     }
 
     @Override
@@ -150,7 +281,7 @@ public class MonteCarloSolver implements Solver {
 
     @Override
     public String getName() {
-        return "MCTS";
+        return (policy == RolloutPolicy.UNIFORM) ? "MCTS" : "MCTS Frontier";
     }
 
     @Override
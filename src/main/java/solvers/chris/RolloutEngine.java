@@ -0,0 +1,385 @@
+package solvers.chris;
+
+import io.River;
+import state.Bfs;
+import state.GameState;
+import state.UnionFind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Plays random games from a game state on int arrays.
+ *
+ * The map is taken from the state once: rivers as pairs of dense site
+ * indices (the positions of the site IDs in sorted order, which are the
+ * IDs themselves if they are dense already), squared mine distances from
+ * one breadth-first search per mine, and per punter a union-find over the
+ * sites connected by the rivers the punter already has. A playout shuffles the unclaimed rivers as they are needed, lets
+ * the punters claim them in turn with undoable unions, scores the result
+ * and undoes the unions. Nothing is allocated per playout. A caller can
+ * also make the first claims of a playout itself, as the UCT search does
+ * for the claims in its tree.
+ *
+ * Which rivers are claimed is up to a {@link RolloutPolicy}: for each
+ * claim, the punter takes the best of a few random unclaimed rivers,
+ * or with probability epsilon just a random one.
+ *
+ * The tables built from the state are shared with copies made by
+ * {@link #RolloutEngine(RolloutEngine)}, so that each thread can play
+ * on its own copy. Options and splurges are not played.
+ */
+class RolloutEngine {
+
+    private final int numPunters;
+    private final int numSites;
+    private final int[] riverSource;
+    private final int[] riverTarget;
+    /** Site indices of the mines. */
+    private final int[] mines;
+    /** Per mine: squared distance to each site index, 0 if unreachable. */
+    private final int[][] mineScores;
+    /** Per punter: the sites connected in the current state. */
+    private final UnionFind[] baseComponents;
+    /** Indices of the rivers that are unclaimed in the current state. */
+    private final int[] unclaimed;
+    /** Per river index: its position in unclaimed, -1 if it is claimed in the state. */
+    private final int[] unclaimedNumber;
+    /** Per site index: is it a mine? */
+    private final boolean[] isMine;
+    /** Per punter, numSites entries each: is the site touched by a river of the punter in the current state? */
+    private final boolean[] baseTouched;
+
+    private RolloutPolicy policy = RolloutPolicy.UNIFORM;
+    private double epsilon = 1;
+    private int numCandidates = 4;
+
+    /** Per punter: the sites connected in the current playout. */
+    private final UnionFind[] components;
+    private final boolean[] touched;
+    /** Rivers claimed by a playout, in order, taken from a shuffle of the unclaimed rivers. */
+    private final int[] order;
+    /** Per river index: its position in order, -1 if it is claimed in the state. */
+    private final int[] position;
+    /** Per site index: the last mine in its component, by stamp. */
+    private final int[] firstMine;
+    private final int[] firstMineStamp;
+    /** Per mine: the next mine in the same component. */
+    private final int[] nextMine;
+    private int stamp = 0;
+    private int numClaimed = 0;
+
+    RolloutEngine(GameState state) {
+        numPunters = state.getNumPunters();
+        int numRivers = state.getNumRivers();
+        int[] siteIds = state.getSites().stream().mapToInt(Integer::intValue).sorted().toArray();
+        boolean dense = siteIds.length == 0 || siteIds[siteIds.length - 1] == siteIds.length - 1;
+        numSites = siteIds.length;
+
+        riverSource = new int[numRivers];
+        riverTarget = new int[numRivers];
+        baseComponents = new UnionFind[numPunters];
+        for (int p = 0; p < numPunters; p++) {
+            baseComponents[p] = new UnionFind(numSites);
+        }
+        baseTouched = new boolean[numPunters * numSites];
+        int numUnclaimed = 0;
+        int[] free = new int[numRivers];
+        List<River> rivers = new ArrayList<>(numRivers);
+        for (int i = 0; i < numRivers; i++) {
+            River river = state.getRiverByIndex(i);
+            rivers.add(river);
+            riverSource[i] = siteIndex(siteIds, dense, river.getSource());
+            riverTarget[i] = siteIndex(siteIds, dense, river.getTarget());
+            if (!river.isClaimed()) {
+                free[numUnclaimed++] = i;
+            } else {
+                claimBase(river.getOwner(), i);
+                if (river.getOption() >= 0) {
+                    claimBase(river.getOption(), i);
+                }
+            }
+        }
+        unclaimed = Arrays.copyOf(free, numUnclaimed);
+        unclaimedNumber = positions(unclaimed, numRivers);
+
+        mines = state.getMines().stream()
+                .mapToInt(id -> siteIndex(siteIds, dense, id))
+                .sorted()
+                .toArray();
+        isMine = new boolean[numSites];
+        for (int mine : mines) {
+            isMine[mine] = true;
+        }
+        Bfs bfs = new Bfs(rivers);
+        mineScores = new int[mines.length][numSites];
+        for (int k = 0; k < mines.length; k++) {
+            int[] dist = bfs.getShortestPathLengths(siteIds[mines[k]]);
+            for (int s = 0; s < numSites; s++) {
+                int d = (siteIds[s] < dist.length) ? dist[siteIds[s]] : -1;
+                mineScores[k][s] = (d > 0) ? d * d : 0;
+            }
+        }
+
+        components = copy(baseComponents);
+        touched = new boolean[baseTouched.length];
+        order = unclaimed.clone();
+        position = positions(order, riverSource.length);
+        firstMine = new int[numSites];
+        firstMineStamp = new int[numSites];
+        nextMine = new int[mines.length];
+    }
+
+    /**
+     * A copy for another thread, sharing the tables built from the state
+     * and the policy.
+     */
+    RolloutEngine(RolloutEngine base) {
+        numPunters = base.numPunters;
+        numSites = base.numSites;
+        riverSource = base.riverSource;
+        riverTarget = base.riverTarget;
+        mines = base.mines;
+        mineScores = base.mineScores;
+        baseComponents = base.baseComponents;
+        unclaimed = base.unclaimed;
+        unclaimedNumber = base.unclaimedNumber;
+        isMine = base.isMine;
+        baseTouched = base.baseTouched;
+        policy = base.policy;
+        epsilon = base.epsilon;
+        numCandidates = base.numCandidates;
+
+        components = copy(baseComponents);
+        touched = new boolean[baseTouched.length];
+        order = unclaimed.clone();
+        position = positions(order, riverSource.length);
+        firstMine = new int[numSites];
+        firstMineStamp = new int[numSites];
+        nextMine = new int[mines.length];
+    }
+
+    /** The dense index of a site ID: its position in the sorted site IDs. */
+    private static int siteIndex(int[] siteIds, boolean dense, int siteId) {
+        return dense ? siteId : Arrays.binarySearch(siteIds, siteId);
+    }
+
+    private static UnionFind[] copy(UnionFind[] components) {
+        UnionFind[] result = new UnionFind[components.length];
+        for (int p = 0; p < components.length; p++) {
+            result[p] = new UnionFind(components[p]);
+        }
+        return result;
+    }
+
+    /**
+     * Set how playouts choose their rivers.
+     * @param epsilon probability of claiming a uniformly random river instead
+     * @param numCandidates number of random rivers the policy chooses from
+     */
+    void setPolicy(RolloutPolicy policy, double epsilon, int numCandidates) {
+        this.policy = policy;
+        this.epsilon = epsilon;
+        this.numCandidates = Math.max(1, numCandidates);
+    }
+
+    int getNumPunters() {
+        return numPunters;
+    }
+
+    /** Site index of the source of the given river. */
+    int getSource(int river) {
+        return riverSource[river];
+    }
+
+    /** Site index of the target of the given river. */
+    int getTarget(int river) {
+        return riverTarget[river];
+    }
+
+    boolean isMine(int site) {
+        return isMine[site];
+    }
+
+    /** Is the site touched by a river of the punter, in the current playout? */
+    boolean isTouched(int punter, int site) {
+        return touched[punter * numSites + site];
+    }
+
+    /** Number of rivers unclaimed in the state, which a playout can claim. */
+    int getNumUnclaimed() {
+        return unclaimed.length;
+    }
+
+    /** River index of the given unclaimed river, 0..getNumUnclaimed()-1. */
+    int getUnclaimedRiver(int i) {
+        return unclaimed[i];
+    }
+
+    /**
+     * Play a random game: the first punter claims the given unclaimed river,
+     * then the punters take turns claiming random unclaimed rivers.
+     * @param first the first river, as a number 0..getNumUnclaimed()-1
+     * @param plies the number of claims, including the first one
+     * @param scores receives the score of each punter
+     */
+    void play(int first, int firstPunter, int plies, SplittableRandom rng, int[] scores) {
+        begin();
+        if (plies > 0) {
+            claim(firstPunter, unclaimed[first]);
+            plies--;
+        }
+        finish((firstPunter + 1) % numPunters, plies, rng, scores);
+    }
+
+    /**
+     * Start a playout from the state. The caller can claim rivers of its
+     * choice with {@link #claim} and then has the game played out with
+     * {@link #finish}.
+     */
+    void begin() {
+        System.arraycopy(baseTouched, 0, touched, 0, touched.length);
+        numClaimed = 0;
+    }
+
+    /** A uniformly random river index that is still unclaimed in the current playout, or -1 if there is none. */
+    int randomOpenRiver(SplittableRandom rng) {
+        int n = order.length - numClaimed;
+        return (n == 0) ? -1 : order[numClaimed + rng.nextInt(n)];
+    }
+
+    /**
+     * Let the punter claim the given river in the current playout.
+     * @return {@code false} if the river is not unclaimed in the playout
+     */
+    boolean claim(int punter, int river) {
+        int i = position[river];
+        if (i < numClaimed) {
+            return false;
+        }
+        swap(numClaimed, i);
+        take(punter, river);
+        numClaimed++;
+        return true;
+    }
+
+    /**
+     * Finish the current playout: starting with the given punter, the punters
+     * take turns claiming random unclaimed rivers, at most plies of them. Then
+     * score the playout and undo its unions.
+     * @param scores receives the score of each punter
+     */
+    void finish(int punter, int plies, SplittableRandom rng, int[] scores) {
+        for (int k = 0; k < plies && numClaimed < order.length; k++) {
+            swap(numClaimed, choose(numClaimed, punter, rng));
+            take(punter, order[numClaimed]);
+            numClaimed++;
+            punter = (punter + 1) % numPunters;
+        }
+        for (int p = 0; p < numPunters; p++) {
+            scores[p] = score(p);
+            while (components[p].getNumUndoable() > 0) {
+                components[p].undo();
+            }
+        }
+    }
+
+    /** Number of rivers claimed by the current or last playout. */
+    int getNumClaimed() {
+        return numClaimed;
+    }
+
+    /** River index of the i-th claim of the last playout. */
+    int getClaimedRiver(int i) {
+        return order[i];
+    }
+
+    /** The i-th claim of the last playout, as a number 0..getNumUnclaimed()-1. */
+    int getClaimedNumber(int i) {
+        return unclaimedNumber[order[i]];
+    }
+
+    /**
+     * Score of the punter after the last playout: for each component, the
+     * squared distances from the mines in it to each of its sites.
+     */
+    private int score(int punter) {
+        UnionFind sites = components[punter];
+        stamp++;
+        if (stamp == 0) {
+            Arrays.fill(firstMineStamp, 0);
+            stamp = 1;
+        }
+        for (int k = 0; k < mines.length; k++) {
+            int root = sites.find(mines[k]);
+            nextMine[k] = (firstMineStamp[root] == stamp) ? firstMine[root] : -1;
+            firstMine[root] = k;
+            firstMineStamp[root] = stamp;
+        }
+        int score = 0;
+        for (int s = 0; s < numSites; s++) {
+            int root = sites.find(s);
+            if (firstMineStamp[root] != stamp) {
+                continue;
+            }
+            for (int k = firstMine[root]; k >= 0; k = nextMine[k]) {
+                score += mineScores[k][s];
+            }
+        }
+        return score;
+    }
+
+    /** Position in order, at or after the given one, of the next river for the punter to claim. */
+    private int choose(int from, int punter, SplittableRandom rng) {
+        int n = order.length - from;
+        int best = from + rng.nextInt(n);
+        if (policy == RolloutPolicy.UNIFORM || rng.nextDouble() < epsilon) {
+            return best;
+        }
+        int bestWeight = policy.weight(this, punter, order[best]);
+        for (int k = 1; k < numCandidates; k++) {
+            int candidate = from + rng.nextInt(n);
+            int weight = policy.weight(this, punter, order[candidate]);
+            if (weight > bestWeight) {
+                best = candidate;
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    private void take(int punter, int river) {
+        int offset = punter * numSites;
+        components[punter].unionUndoable(riverSource[river], riverTarget[river]);
+        touched[offset + riverSource[river]] = true;
+        touched[offset + riverTarget[river]] = true;
+    }
+
+    private void claimBase(int punter, int river) {
+        int offset = punter * numSites;
+        baseComponents[punter].union(riverSource[river], riverTarget[river]);
+        baseTouched[offset + riverSource[river]] = true;
+        baseTouched[offset + riverTarget[river]] = true;
+    }
+
+    /** Position of each river index in order, -1 for the rivers not in it. */
+    private static int[] positions(int[] order, int numRivers) {
+        int[] position = new int[numRivers];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < order.length; i++) {
+            position[order[i]] = i;
+        }
+        return position;
+    }
+
+    private void swap(int i, int j) {
+        int t = order[i];
+        order[i] = order[j];
+        order[j] = t;
+        position[order[i]] = i;
+        position[order[j]] = j;
+    }
+
+}
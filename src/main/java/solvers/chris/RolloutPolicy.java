@@ -0,0 +1,31 @@
+package solvers.chris;
+
+/**
+ * Chooses the rivers claimed in the playouts of a {@link RolloutEngine}.
+ * The engine draws a few random unclaimed rivers and lets the punter
+ * claim the one with the highest weight.
+ */
+public interface RolloutPolicy {
+
+    /** Every river is as good as any other: claim uniformly random rivers. */
+    RolloutPolicy UNIFORM = (engine, punter, river) -> 0;
+
+    /**
+     * A light version of the scoring of MineConnectClaimer: prefer rivers
+     * at mines and rivers extending the punter's network.
+     */
+    RolloutPolicy FRONTIER = (engine, punter, river) -> {
+        int s = engine.getSource(river);
+        int t = engine.getTarget(river);
+        int weight = 0;
+        if (engine.isMine(s)) weight += 100;
+        if (engine.isMine(t)) weight += 100;
+        if (engine.isTouched(punter, s)) weight += 60;
+        if (engine.isTouched(punter, t)) weight += 60;
+        return weight;
+    };
+
+    /** Weight of the punter claiming the given river during a playout; higher is better. */
+    int weight(RolloutEngine engine, int punter, int river);
+
+}
@@ -0,0 +1,408 @@
+package solvers.chris;
+
+import io.Future;
+import io.Move;
+import io.River;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import solvers.Solver;
+import state.GameState;
+import state.GameStateListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.IntFunction;
+
+/**
+ * Monte Carlo tree search with UCB1 (UCT) over the claims of all punters.
+ *
+ * The calling thread and a pool of worker threads share one tree, each
+ * playing on its own copy of a {@link RolloutEngine} built from the state;
+ * the state passed in is never changed, so the search can be abandoned at
+ * any time. Node statistics are atomic counters. A visit is counted when a
+ * thread descends into a node and its reward only when the playout is done,
+ * so that pending playouts count as losses and steer the other threads
+ * elsewhere (virtual loss).
+ *
+ * Nodes are widened progressively: a node gets another child only while it
+ * has fewer than 1 + WIDENING * sqrt(visits) children. Children are drawn
+ * uniformly at random from the rivers still unclaimed in the playout, and
+ * playouts below the tree claim random rivers until the game ends. Each
+ * punter is rewarded with its score relative to the best score of the
+ * playout. Options and splurges are not considered.
+ *
+ * The tree is kept between moves. The solver listens to the state for the
+ * claims made between its searches, and the next search starts from the
+ * node they lead to, with the statistics gathered on earlier turns. If the
+ * claims are not in the tree, or anything else happened (an option, a
+ * splurge, a pass, or a new state object), the search starts afresh.
+ */
+public class UctSolver implements Solver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UctSolver.class);
+
+    private static final double EXPLORATION = 0.7;
+    private static final double WIDENING = 2.0;
+    /** Rewards are summed as fixed point numbers with this scale. */
+    static final long REWARD_SCALE = 1 << 20;
+    /** Number of playouts between updates of the best move so far. */
+    private static final int PUBLISH_INTERVAL = 32;
+
+    private final long timeout;
+    private final SplittableRandom rng;
+    private final int numThreads;
+    private final ExecutorService workers;
+
+    private Move bestSoFar = null;
+
+    /** The tree of the last search, and the state it searched. */
+    private Node tree;
+    private GameState treeState;
+    /** Claims on the tree state since the last search, as pairs of punter and river index. */
+    private int[] claims = new int[16];
+    private int claimsSize = 0;
+    /** Did the state change other than by claims since the last search? */
+    private boolean treeLost = false;
+
+    private final GameStateListener claimRecorder = new GameStateListener() {
+        @Override
+        public void riverClaimed(int punter, int river, boolean splurge) {
+            if (splurge) {
+                treeLost = true;
+            } else {
+                if (claimsSize + 2 > claims.length) {
+                    claims = Arrays.copyOf(claims, 2 * claims.length);
+                }
+                claims[claimsSize++] = punter;
+                claims[claimsSize++] = river;
+            }
+        }
+
+        @Override
+        public void riverOptioned(int punter, int river, boolean splurge) {
+            treeLost = true;
+        }
+
+        @Override
+        public void riverReleased(int punter, int river) {
+            treeLost = true;
+        }
+    };
+
+    /**
+     * Use one thread per available processor.
+     * @param timeout timeout in nanoseconds
+     */
+    public UctSolver(long timeout) {
+        this(timeout, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param timeout timeout in nanoseconds
+     * @param numThreads number of threads searching the tree, including the calling thread
+     */
+    public UctSolver(long timeout, int numThreads) {
+        this.timeout = 9 * timeout / 10;
+        this.rng = new SplittableRandom();
+        this.numThreads = Math.max(1, numThreads);
+        if (this.numThreads > 1) {
+            workers = Executors.newFixedThreadPool(this.numThreads - 1, r -> {
+                Thread t = new Thread(r, "uct-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            workers = null;
+        }
+    }
+
+    /**
+     * A position in the tree, reached by a punter claiming a river.
+     */
+    static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+        /** Index of the river claimed, -1 for a fresh root. */
+        final int river;
+        /** The punter who claimed the river. */
+        final int punter;
+        final AtomicInteger visits = new AtomicInteger();
+        final AtomicLong reward = new AtomicLong();
+        private volatile Node[] children = NO_CHILDREN;
+
+        Node(int river, int punter) {
+            this.river = river;
+            this.punter = punter;
+        }
+
+        Node[] getChildren() {
+            return children;
+        }
+
+        Node getChild(int river) {
+            for (Node child : children) {
+                if (child.river == river) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Add a child for the given river.
+         * @return the new child, or null if there already is one for the river
+         */
+        Node addChild(int river, int punter) {
+            Node child = new Node(river, punter);
+            while (true) {
+                Node[] old = children;
+                for (Node c : old) {
+                    if (c.river == river) {
+                        return null;
+                    }
+                }
+                Node[] extended = Arrays.copyOf(old, old.length + 1);
+                extended[old.length] = child;
+                if (CHILDREN.compareAndSet(this, old, extended)) {
+                    return child;
+                }
+            }
+        }
+
+        double getMeanReward() {
+            int n = visits.get();
+            return (n == 0) ? 0 : (double) reward.get() / REWARD_SCALE / n;
+        }
+    }
+
+    @Override
+    public Move getNextMove(GameState state) {
+        long stopTime = System.nanoTime() + timeout;
+        int me = state.getMyPunterId();
+        int first = state.nextUnclaimedRiver(0);
+        synchronized (this) {
+            bestSoFar = (first < 0) ? null : Move.claim(me, state.getRiverByIndex(first));
+        }
+        if (first < 0) {
+            return null;
+        }
+        int maxPlies = state.getRemainingNumberOfMoves() * state.getNumPunters();
+        Node root = reuseTree(state);
+        int reused = root.visits.get();
+
+        RolloutEngine engine = new RolloutEngine(state);
+        AtomicBoolean stop = new AtomicBoolean();
+        List<java.util.concurrent.Future<Integer>> helpers = startWorkers(engine, me, root, maxPlies, stopTime, stop);
+        int playouts = 0;
+        try {
+            playouts += search(engine, me, root, maxPlies, rng.split(), stopTime, stop, state::getRiverByIndex);
+        } finally {
+            stop.set(true);
+        }
+        for (java.util.concurrent.Future<Integer> helper : helpers) {
+            try {
+                playouts += helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                LOG.error("UCT worker failed", e.getCause());
+            }
+        }
+        tree = root;
+        Node best = mostVisited(root);
+        LOG.info("UCT playouts: {}, reused: {}, root children: {}, best: {}", playouts, reused, root.getChildren().length,
+                (best == null) ? "-" : best.visits.get() + " visits, " + best.getMeanReward());
+        if (best != null) {
+            synchronized (this) {
+                bestSoFar = Move.claim(me, state.getRiverByIndex(best.river));
+            }
+        }
+        return getBestChoice();
+    }
+
+    /** The tree of the last search, or null. */
+    Node getTree() {
+        return tree;
+    }
+
+    /**
+     * The node of the kept tree reached by the claims since the last search,
+     * or a fresh root if there is none.
+     */
+    Node reuseTree(GameState state) {
+        int numPunters = state.getNumPunters();
+        int previous = (state.getMyPunterId() + numPunters - 1) % numPunters;
+        Node node = tree;
+        if (state != treeState) {
+            if (treeState != null) {
+                treeState.removeListener(claimRecorder);
+            }
+            state.addListener(claimRecorder);
+            treeState = state;
+            node = null;
+        }
+        for (int i = 0; i < claimsSize && node != null; i += 2) {
+            node = node.getChild(claims[i + 1]);
+            if (node != null && node.punter != claims[i]) {
+                node = null;
+            }
+        }
+        if (treeLost || node == null || node.punter != previous || state.getNumTentativeMoves() > 0) {
+            node = new Node(-1, previous);
+        }
+        tree = null;
+        claimsSize = 0;
+        treeLost = false;
+        return node;
+    }
+
+    /**
+     * Start the worker threads on copies of the engine.
+     * @return for each worker, its number of playouts
+     */
+    private List<java.util.concurrent.Future<Integer>> startWorkers(RolloutEngine engine, int me, Node root, int maxPlies,
+                                                                   long stopTime, AtomicBoolean stop) {
+        List<java.util.concurrent.Future<Integer>> helpers = new ArrayList<>();
+        if (workers == null) {
+            return helpers;
+        }
+        for (int k = 1; k < numThreads; k++) {
+            SplittableRandom random = rng.split();
+            RolloutEngine copy = new RolloutEngine(engine);
+            helpers.add(workers.submit(() -> search(copy, me, root, maxPlies, random, stopTime, stop, null)));
+        }
+        return helpers;
+    }
+
+    /**
+     * Run playouts from the root until the stop time.
+     * @param rivers looks up rivers by index to keep {@link #bestSoFar} up to date, or null
+     * @return the number of playouts
+     */
+    private int search(RolloutEngine engine, int me, Node root, int maxPlies, SplittableRandom rng,
+                       long stopTime, AtomicBoolean stop, IntFunction<River> rivers) {
+        Node[] path = new Node[maxPlies + 1];
+        int[] scores = new int[engine.getNumPunters()];
+        int playouts = 0;
+        while (System.nanoTime() < stopTime && !stop.get() && !Thread.currentThread().isInterrupted()) {
+            playout(engine, me, root, maxPlies, rng, path, scores);
+            playouts++;
+            if (rivers != null && playouts % PUBLISH_INTERVAL == 0) {
+                Node best = mostVisited(root);
+                if (best != null) {
+                    synchronized (this) {
+                        bestSoFar = Move.claim(me, rivers.apply(best.river));
+                    }
+                }
+            }
+        }
+        return playouts;
+    }
+
+    /**
+     * Descend the tree, adding a node where it can still grow, play randomly to
+     * the end of the game, and add the rewards to the nodes on the way.
+     */
+    private void playout(RolloutEngine engine, int me, Node root, int maxPlies, SplittableRandom rng,
+                         Node[] path, int[] scores) {
+        int numPunters = engine.getNumPunters();
+        int length = 0;
+        engine.begin();
+        root.visits.incrementAndGet();
+        Node node = root;
+        int punter = me;
+        int ply = 0;
+        boolean expanded = false;
+        while (!expanded && ply < maxPlies) {
+            Node child = null;
+            int numChildren = node.getChildren().length;
+            if (numChildren < 1 + WIDENING * Math.sqrt(node.visits.get())) {
+                int river = engine.randomOpenRiver(rng);
+                if (river < 0) {
+                    break;
+                }
+                child = node.addChild(river, punter);
+                expanded = (child != null);
+            }
+            if (child == null) {
+                child = select(node);
+                if (child == null) {
+                    break;
+                }
+            }
+            if (!engine.claim(punter, child.river)) {
+                break;
+            }
+            child.visits.incrementAndGet();
+            path[length++] = child;
+            node = child;
+            punter = (punter + 1) % numPunters;
+            ply++;
+        }
+        engine.finish(punter, maxPlies - ply, rng, scores);
+        int bestScore = 1;
+        for (int p = 0; p < numPunters; p++) {
+            bestScore = Math.max(bestScore, scores[p]);
+        }
+        for (int i = 0; i < length; i++) {
+            Node n = path[i];
+            n.reward.addAndGet(Math.round((double) scores[n.punter] / bestScore * REWARD_SCALE));
+        }
+    }
+
+    /** The child with the best upper confidence bound for the punter who claims its river. */
+    static Node select(Node node) {
+        Node[] children = node.getChildren();
+        double logVisits = Math.log(Math.max(1, node.visits.get()));
+        Node best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (Node child : children) {
+            int n = child.visits.get();
+            double value = (n == 0)
+                    ? Double.POSITIVE_INFINITY
+                    : (double) child.reward.get() / REWARD_SCALE / n + EXPLORATION * Math.sqrt(logVisits / n);
+            if (value > bestValue) {
+                best = child;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    private static Node mostVisited(Node node) {
+        Node best = null;
+        for (Node child : node.getChildren()) {
+            if (best == null || child.visits.get() > best.visits.get()) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public Future[] getFutures(GameState state) {
+        return new Future[0];
+    }
+
+    @Override
+    public String getName() {
+        return "UCT";
+    }
+
+    @Override
+    public synchronized Move getBestChoice() {
+        return bestSoFar;
+    }
+}
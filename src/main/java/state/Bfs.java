@@ -3,49 +3,114 @@ package state;
 import io.River;
 
 import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Find shortest paths using breadth-first-search.
+ *
+ * The edges are numbered in the order given to the constructor. Searches
+ * reuse the same scratch buffers, so an instance must not be used by
+ * several threads at once.
  */
 public class Bfs {
 
-    private static final River SENTINEL = new River(-1,-1);
+    private static final int[] NO_EDGES = new int[0];
 
     private final int maxVertex;
     private final BitSet vertices;
 
-    private final ArrayNatMap<List<River>> edgesByVertex;
+    private final River[] edges;
+    private final int[] edgeSource;
+    private final int[] edgeTarget;
+    /** The edges touching vertex v are edgeIndex[edgeStart[v]] .. edgeIndex[edgeStart[v+1]-1]. */
+    private final int[] edgeStart;
+    private final int[] edgeIndex;
+
+    private SearchBuffer forward;
+    private SearchBuffer backward;
+    /** Scratch buffer for searches over (vertex, budget used) states. */
+    private SearchBuffer states;
+    private IntQueue deque;
 
     public Bfs(Collection<River> edges) {
         int n = edges.size();
+        this.edges = edges.toArray(new River[n]);
         vertices = new BitSet(n);
+        edgeSource = new int[n];
+        edgeTarget = new int[n];
         int maxId = -1;
-        for (River e : edges) {
+        for (int i = 0; i < n; i++) {
+            River e = this.edges[i];
+            edgeSource[i] = e.getSource();
+            edgeTarget[i] = e.getTarget();
             vertices.set(e.getSource());
             vertices.set(e.getTarget());
             if (e.getSource() > maxId) maxId = e.getSource();
             if (e.getTarget() > maxId) maxId = e.getTarget();
         }
         maxVertex = maxId;
-        edgesByVertex = new ArrayNatMap<>(maxId + 1);
-        for (River e : edges) {
-            addEdge(e.getSource(), e);
-            addEdge(e.getTarget(), e);
+        edgeStart = new int[maxId + 2];
+        for (int i = 0; i < n; i++) {
+            edgeStart[edgeSource[i] + 1]++;
+            edgeStart[edgeTarget[i] + 1]++;
+        }
+        for (int v = 0; v <= maxId; v++) {
+            edgeStart[v + 1] += edgeStart[v];
+        }
+        edgeIndex = new int[2 * n];
+        int[] fill = Arrays.copyOf(edgeStart, maxId + 1);
+        for (int i = 0; i < n; i++) {
+            edgeIndex[fill[edgeSource[i]]++] = i;
+            edgeIndex[fill[edgeTarget[i]]++] = i;
         }
+    }
 
+    /**
+     * Search a graph that is already in compressed sparse row form, over the
+     * vertices 0..numVertices-1. The arrays are shared, not copied.
+     * @param edges the edge objects handed out by {@link #getShortestPath} and {@link #getEdge}
+     * @param edgeSource vertex of one end of each edge
+     * @param edgeTarget vertex of the other end of each edge
+     * @param edgeStart the edges touching vertex v are edgeIndex[edgeStart[v]] .. edgeIndex[edgeStart[v+1]-1]
+     */
+    Bfs(River[] edges, int numVertices, int[] edgeSource, int[] edgeTarget, int[] edgeStart, int[] edgeIndex) {
+        this.edges = edges;
+        this.edgeSource = edgeSource;
+        this.edgeTarget = edgeTarget;
+        this.edgeStart = edgeStart;
+        this.edgeIndex = edgeIndex;
+        maxVertex = numVertices - 1;
+        vertices = new BitSet(numVertices);
+        vertices.set(0, numVertices);
     }
 
-    private void addEdge(int vertex, River edge) {
-        List<River> es = edgesByVertex.get(vertex);
-        if (es == null) {
-            es = new ArrayList<>();
-            edgesByVertex.put(vertex, es);
-        }
-        es.add(edge);
+    private int opposite(int edge, int vertex) {
+        return (edgeSource[edge] == vertex) ? edgeTarget[edge] : edgeSource[edge];
     }
 
     public boolean containsVertex(int vertex) {
-        return vertices.get(vertex);
+        return vertex >= 0 && vertices.get(vertex);
+    }
+
+    public River getEdge(int index) {
+        return edges[index];
+    }
+
+    private SearchBuffer forward() {
+        if (forward == null) {
+            forward = new SearchBuffer(maxVertex + 1);
+        }
+        forward.clear();
+        return forward;
+    }
+
+    private SearchBuffer backward() {
+        if (backward == null) {
+            backward = new SearchBuffer(maxVertex + 1);
+        }
+        backward.clear();
+        return backward;
     }
 
     /**
@@ -54,83 +119,298 @@ public class Bfs {
      * and the empty list if source and target are identical.
      */
     public List<River> getShortestPath(int source, int target) {
+        int[] path = getShortestPathEdges(source, target);
+        if (path == null) {
+            return null;
+        }
+        List<River> result = new ArrayList<>(path.length);
+        for (int e : path) {
+            result.add(edges[e]);
+        }
+        return result;
+    }
+
+    /**
+     * Find the shortest path from source to target as edge indices, in order
+     * from source. Returns null if there is no path between source and target,
+     * and an empty array if source and target are identical.
+     *
+     * Searches from both ends, always expanding a whole level of the
+     * smaller frontier, and stops after the first level in which the
+     * two searches meet. On long routes this visits far fewer vertices
+     * than a search from the source alone.
+     */
+    public int[] getShortestPathEdges(int source, int target) {
+        return getShortestPathEdges(source, target, null);
+    }
+
+    /**
+     * Like {@link #getShortestPathEdges(int, int)}, but only uses the edges
+     * whose indices are accepted by the filter, or all edges if it is null.
+     */
+    public int[] getShortestPathEdges(int source, int target, IntPredicate usable) {
         if (source == target) {
-            return Collections.emptyList();
+            return NO_EDGES;
         }
         if (!(containsVertex(source) && containsVertex(target))) {
             return null;
         }
 
-        ArrayNatMap<River> visited = new ArrayNatMap<>(maxVertex + 1);
-        IntQueue queue = new IntQueue(24);
-        enqueue(visited, queue, source, SENTINEL);
-        while (!queue.isEmpty()) {
-            int node = queue.removeFirst();
-            if (node == target) {
-                return extractPath(visited, node);
-            }
-            List<River> edges = edgesByVertex.get(node);
-            if (edges != null) {
-                for (River r : edges) {
-                    if (r.getSource() == node && !visited.containsKey(r.getTarget())) {
-                        enqueue(visited, queue, r.getTarget(), r);
-                    } else if (!visited.containsKey(r.getSource())) {
-                        enqueue(visited, queue, r.getSource(), r);
+        SearchBuffer fromSource = forward();
+        SearchBuffer fromTarget = backward();
+        fromSource.visit(source, 0, -1);
+        fromTarget.visit(target, 0, -1);
+        while (!fromSource.isQueueEmpty() && !fromTarget.isQueueEmpty()) {
+            boolean isForward = fromSource.queueSize() <= fromTarget.queueSize();
+            SearchBuffer side = isForward ? fromSource : fromTarget;
+            SearchBuffer other = isForward ? fromTarget : fromSource;
+            int best = Integer.MAX_VALUE;
+            int meetNode = -1;
+            int meetEdge = -1;
+            for (int n = side.queueSize(); n > 0; n--) {
+                int node = side.poll();
+                int d = side.distance(node) + 1;
+                for (int k = edgeStart[node]; k < edgeStart[node + 1]; k++) {
+                    int e = edgeIndex[k];
+                    if (usable != null && !usable.test(e)) {
+                        continue;
+                    }
+                    int next = opposite(e, node);
+                    if (other.isVisited(next) && d + other.distance(next) < best) {
+                        best = d + other.distance(next);
+                        meetNode = node;
+                        meetEdge = e;
+                    }
+                    if (!side.isVisited(next)) {
+                        side.visit(next, d, e);
                     }
                 }
             }
+            if (meetEdge >= 0) {
+                int otherNode = opposite(meetEdge, meetNode);
+                return isForward
+                        ? extractPath(fromSource, meetNode, meetEdge, fromTarget, otherNode)
+                        : extractPath(fromSource, otherNode, meetEdge, fromTarget, meetNode);
+            }
         }
         return null;
     }
 
     /**
-     * Find the distance to all vertices reachable from source.
-     * The source is included in the returned map with a value of 0.
+     * Join the path from the source to one end of the meeting edge
+     * and the path from its other end to the target.
      */
-    public ArrayNatMap<Integer> getAllShortestPathLengths(int source) {
-        ArrayNatMap<Integer> result = new ArrayNatMap<>(maxVertex + 1);
-        IntQueue queue = new IntQueue(24);
-        int dist = 0;
-        enqueue(result, queue, source, dist);
-        while (!queue.isEmpty()) {
-            dist++;
-            int node = queue.removeFirst();
-            List<River> edges = edgesByVertex.get(node);
-            if (edges != null) {
-                for (River r : edges) {
-                    if (r.getSource() == node && !result.containsKey(r.getTarget())) {
-                        enqueue(result, queue, r.getTarget(), dist);
-                    } else if (!result.containsKey(r.getSource())) {
-                        enqueue(result, queue, r.getSource(), dist);
+    private int[] extractPath(SearchBuffer fromSource, int sourceSide, int meetEdge, SearchBuffer fromTarget, int targetSide) {
+        int head = fromSource.distance(sourceSide);
+        int[] path = new int[head + 1 + fromTarget.distance(targetSide)];
+        int i = head;
+        for (int node = sourceSide; fromSource.via(node) >= 0; ) {
+            int e = fromSource.via(node);
+            path[--i] = e;
+            node = opposite(e, node);
+        }
+        i = head;
+        path[i++] = meetEdge;
+        for (int node = targetSide; fromTarget.via(node) >= 0; ) {
+            int e = fromTarget.via(node);
+            path[i++] = e;
+            node = opposite(e, node);
+        }
+        return path;
+    }
+
+    /**
+     * Marks an edge cost for edges that use up one unit of the budget,
+     * see {@link #getCheapestPathEdges(int, int, IntUnaryOperator, int)}.
+     */
+    public static final int USES_BUDGET = 2;
+
+    /**
+     * Find the path from source to target with the lowest total cost, where
+     * every edge costs 0 or 1, as edge indices in order from source.
+     * Returns null if there is no path, and an empty array if source and
+     * target are identical.
+     *
+     * @param cost cost of each edge index: 0, 1, or -1 if the edge cannot be used
+     */
+    public int[] getCheapestPathEdges(int source, int target, IntUnaryOperator cost) {
+        return getCheapestPathEdges(source, target, cost, 0);
+    }
+
+    /**
+     * Like {@link #getCheapestPathEdges(int, int, IntUnaryOperator)}, but edges
+     * whose cost includes {@link #USES_BUDGET} can be used at most budget times.
+     *
+     * This is a 0-1 breadth-first search over states (vertex, budget used):
+     * states reached over an edge of cost 0 go to the front of the queue, the
+     * others to the back. A state is only expanded if its vertex has not been
+     * expanded before with at most as much budget used, since that earlier
+     * state was at least as cheap.
+     */
+    public int[] getCheapestPathEdges(int source, int target, IntUnaryOperator cost, int budget) {
+        if (source == target) {
+            return NO_EDGES;
+        }
+        if (!(containsVertex(source) && containsVertex(target))) {
+            return null;
+        }
+        int state = cheapestSearch(source, target, cost, budget);
+        return (state < 0) ? null : extractPath(state, budget + 1, cost);
+    }
+
+    /**
+     * Like {@link #getCheapestPathEdges(int, int, IntUnaryOperator, int)}, for
+     * several targets with one search from the source.
+     * @return the path to each target, null if there is none
+     */
+    public int[][] getCheapestPathsEdges(int source, int[] targets, IntUnaryOperator cost, int budget) {
+        int[][] paths = new int[targets.length][];
+        if (!containsVertex(source)) {
+            return paths;
+        }
+        cheapestSearch(source, -1, cost, budget);
+        SearchBuffer reached = forward;
+        for (int i = 0; i < targets.length; i++) {
+            int target = targets[i];
+            if (target == source) {
+                paths[i] = NO_EDGES;
+            } else if (containsVertex(target) && reached.isVisited(target)) {
+                paths[i] = extractPath(reached.via(target), budget + 1, cost);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Run the search of {@link #getCheapestPathEdges(int, int, IntUnaryOperator, int)}.
+     * It stops when it expands the target, or runs through the whole graph if
+     * the target is -1. Afterwards, the forward buffer has the first, cheapest
+     * state expanded for each reached vertex as its via.
+     * @return the state the target was reached in, or -1
+     */
+    private int cheapestSearch(int source, int target, IntUnaryOperator cost, int budget) {
+        int width = budget + 1;
+        if (states == null || states.capacity() < (maxVertex + 1) * width) {
+            states = new SearchBuffer((maxVertex + 1) * width);
+        }
+        states.clear();
+        SearchBuffer leastUsed = forward();
+        if (deque == null) {
+            deque = new IntQueue(24);
+        }
+        deque.clear();
+        states.update(source * width, 0, -1);
+        deque.addLast(source * width);
+        while (!deque.isEmpty()) {
+            int state = deque.removeFirst();
+            int node = state / width;
+            int used = state % width;
+            if (leastUsed.isVisited(node) && leastUsed.distance(node) <= used) {
+                continue;
+            }
+            leastUsed.update(node, used, leastUsed.isVisited(node) ? leastUsed.via(node) : state);
+            if (node == target) {
+                return state;
+            }
+            int d = states.distance(state);
+            for (int k = edgeStart[node]; k < edgeStart[node + 1]; k++) {
+                int e = edgeIndex[k];
+                int c = cost.applyAsInt(e);
+                if (c < 0) {
+                    continue;
+                }
+                int nextUsed = used;
+                if ((c & USES_BUDGET) != 0) {
+                    if (used == budget) {
+                        continue;
+                    }
+                    nextUsed++;
+                    c -= USES_BUDGET;
+                }
+                int next = opposite(e, node);
+                if (leastUsed.isVisited(next) && leastUsed.distance(next) <= nextUsed) {
+                    continue;
+                }
+                int nextState = next * width + nextUsed;
+                if (!states.isVisited(nextState) || d + c < states.distance(nextState)) {
+                    states.update(nextState, d + c, e);
+                    if (c == 0) {
+                        deque.addFirst(nextState);
+                    } else {
+                        deque.addLast(nextState);
                     }
                 }
             }
         }
-        return result;
+        return -1;
     }
 
-
-    private static void enqueue(ArrayNatMap<Integer> visited, IntQueue queue, int node, int dist) {
-        visited.put(node, dist);
-        queue.addLast(node);
+    /**
+     * The edges leading from the start of a search over (vertex, budget used)
+     * states to the given state, in order.
+     */
+    private int[] extractPath(int state, int width, IntUnaryOperator cost) {
+        int length = 0;
+        for (int s = state; states.via(s) >= 0; s = previousState(s, width, cost)) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int s = state; states.via(s) >= 0; s = previousState(s, width, cost)) {
+            path[--length] = states.via(s);
+        }
+        return path;
     }
 
+    private int previousState(int state, int width, IntUnaryOperator cost) {
+        int e = states.via(state);
+        int node = opposite(e, state / width);
+        int used = state % width;
+        if ((cost.applyAsInt(e) & USES_BUDGET) != 0) {
+            used--;
+        }
+        return node * width + used;
+    }
 
-    private static void enqueue(ArrayNatMap<River> visited, IntQueue queue, int node, River edge) {
-        visited.put(node, edge);
-        queue.addLast(node);
+    /**
+     * Find the distance to all vertices reachable from source.
+     * The source is included in the returned map with a value of 0.
+     */
+    public IntNatMap getAllShortestPathLengths(int source) {
+        int[] dist = getShortestPathLengths(source);
+        IntNatMap result = new IntNatMap(dist.length - 1);
+        for (int v = 0; v < dist.length; v++) {
+            if (dist[v] >= 0) {
+                result.put(v, dist[v]);
+            }
+        }
+        return result;
     }
 
-    private static List<River> extractPath(ArrayNatMap<River> visited, int node) {
-        LinkedList<River> path = new LinkedList<>();
-        for (;;) {
-            River entry = visited.get(node);
-            if (entry == SENTINEL) {
-                return path;
+    /**
+     * Find the distance from source to every vertex, indexed by vertex,
+     * with -1 for vertices that cannot be reached. The source has distance 0.
+     */
+    public int[] getShortestPathLengths(int source) {
+        int[] dist = new int[Math.max(maxVertex, source) + 1];
+        Arrays.fill(dist, -1);
+        dist[source] = 0;
+        if (!containsVertex(source)) {
+            return dist;
+        }
+        SearchBuffer search = forward();
+        search.visit(source, 0, -1);
+        while (!search.isQueueEmpty()) {
+            int node = search.poll();
+            int d = search.distance(node) + 1;
+            for (int k = edgeStart[node]; k < edgeStart[node + 1]; k++) {
+                int next = opposite(edgeIndex[k], node);
+                if (!search.isVisited(next)) {
+                    search.visit(next, d, edgeIndex[k]);
+                    dist[next] = d;
+                }
             }
-            path.addFirst(entry);
-            node = entry.getOpposite(node);
         }
+        return dist;
     }
 
 }
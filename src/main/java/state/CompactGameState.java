@@ -0,0 +1,849 @@
+package state;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.*;
+
+import java.beans.Transient;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Game state stored in dense int arrays.
+ *
+ * Sites and rivers are numbered 0..V-1 and 0..R-1. The adjacency is kept
+ * in compressed sparse row form: the rivers touching site s are
+ * adjRiver[adjStart[s]] .. adjRiver[adjStart[s+1]-1]. Owners and options
+ * are arrays indexed by river. The river objects handed out to solvers
+ * are kept in sync, but must not be modified directly.
+ */
+class CompactGameState implements GameState {
+
+    private final int myPunterId;
+    private final int numPunters;
+
+    private int optionsUsed = 0;
+    private int movesPerformed = 0;
+
+    private final Set<Integer> sites;
+    private final Set<Integer> mines;
+    private final Settings settings;
+    private Future[] futures;
+    private SiteMapping siteMapping;
+
+    private final java.util.Map<Integer, Integer> credits = new HashMap<>();
+
+    /** Site IDs, sorted. The index of an ID in this array is its site index. */
+    private final int[] siteIds;
+    /** Are the site IDs 0..V-1, i.e. is every site ID its own index? */
+    private final boolean denseIds;
+    private final int[] mineIndices;
+    /** Distance of each site index from each mine (in the order of mineIndices), -1 if unreachable. */
+    private final int[][] mineDistances;
+    /** Position of each site index in mineIndices, -1 if not a mine. */
+    private final int[] mineNumber;
+
+    private final River[] rivers;
+    private final int[] riverSource;
+    private final int[] riverTarget;
+    private final int[] owner;
+    private final int[] option;
+    private final LongIntMap riverByEnds;
+
+    private final int[] adjStart;
+    private final int[] adjRiver;
+    /** Searches over the adjacency arrays, on site indices. */
+    private final Bfs bfs;
+
+    /** Per site: number of unclaimed rivers. */
+    private final int[] unclaimedDegree;
+    /** Per site: number of rivers claimed or optioned by me. */
+    private final int[] ownDegree;
+    /** Per site: number of rivers I could buy an option for. */
+    private final int[] optionableDegree;
+
+    private final BitSet unclaimed;
+    /** Rivers I could buy an option for. */
+    private final BitSet optionable;
+    /** Per punter: rivers claimed or optioned by the punter. */
+    private final BitSet[] usable;
+
+    /** Per punter: the sites connected by the rivers the punter can use. */
+    private final PunterNetwork[] networks;
+
+    /**
+     * Changes made by tentative moves. Each river change is recorded as
+     * river * 4 + (2 if it was an option) + (1 if it joined two components).
+     * Each move ends with the previous credits of its punter (NO_CREDITS if
+     * none), the punter, and the journal size before the move.
+     */
+    private int[] journal = new int[64];
+    private int journalSize = 0;
+    private int numTentativeMoves = 0;
+    private boolean tentative = false;
+    private static final int NO_CREDITS = Integer.MIN_VALUE;
+
+    private final StateEvents events = new StateEvents();
+
+    private GraphMap graphMap;
+    /** Cheapest open routes between the mines, valid for mineRoutesVersion. */
+    private MineRoutes mineRoutes;
+    private long mineRoutesVersion = -1;
+
+    CompactGameState(Setup.Request setup) {
+        this(setup.getPunter(), setup.getPunters(), siteIdsOf(setup.getMap().getSites()),
+                setup.getMap().getRivers(), setup.getMap().getMines(), setup.getSettings());
+    }
+
+    @JsonCreator
+    CompactGameState(@JsonProperty("myPunterId") int myPunterId,
+                     @JsonProperty("numPunters") int numPunters,
+                     @JsonProperty("sites") Collection<Integer> sites,
+                     @JsonProperty("rivers") Collection<River> rivers,
+                     @JsonProperty("mines") Collection<Integer> mines,
+                     @JsonProperty("settings") Settings settings) {
+        this.myPunterId = myPunterId;
+        this.numPunters = numPunters;
+        this.sites = new HashSet<>(sites);
+        this.mines = new HashSet<>(mines);
+        this.settings = (settings == null) ? new Settings() : settings;
+
+        Set<Integer> ids = new HashSet<>(sites);
+        for (River r : rivers) {
+            ids.add(r.getSource());
+            ids.add(r.getTarget());
+        }
+        siteIds = ids.stream().mapToInt(Integer::intValue).sorted().toArray();
+        denseIds = siteIds.length == 0 || (siteIds[0] == 0 && siteIds[siteIds.length - 1] == siteIds.length - 1);
+
+        this.rivers = rivers.toArray(new River[rivers.size()]);
+        Arrays.sort(this.rivers, Comparator.comparingInt(River::getSource).thenComparingInt(River::getTarget));
+        int numRivers = this.rivers.length;
+        riverSource = new int[numRivers];
+        riverTarget = new int[numRivers];
+        owner = new int[numRivers];
+        option = new int[numRivers];
+        riverByEnds = new LongIntMap(numRivers);
+        int[] degree = new int[siteIds.length];
+        for (int i = 0; i < numRivers; i++) {
+            River r = this.rivers[i];
+            riverByEnds.put(LongIntMap.pairKey(r.getSource(), r.getTarget()), i);
+            riverSource[i] = siteIndex(r.getSource());
+            riverTarget[i] = siteIndex(r.getTarget());
+            owner[i] = r.getOwner();
+            option[i] = r.getOption();
+            degree[riverSource[i]]++;
+            degree[riverTarget[i]]++;
+        }
+
+        adjStart = new int[siteIds.length + 1];
+        for (int s = 0; s < siteIds.length; s++) {
+            adjStart[s + 1] = adjStart[s] + degree[s];
+        }
+        adjRiver = new int[adjStart[siteIds.length]];
+        int[] fill = Arrays.copyOf(adjStart, siteIds.length);
+        for (int i = 0; i < numRivers; i++) {
+            adjRiver[fill[riverSource[i]]++] = i;
+            adjRiver[fill[riverTarget[i]]++] = i;
+        }
+        bfs = new Bfs(this.rivers, siteIds.length, riverSource, riverTarget, adjStart, adjRiver);
+
+        unclaimedDegree = new int[siteIds.length];
+        ownDegree = new int[siteIds.length];
+        optionableDegree = new int[siteIds.length];
+        unclaimed = new BitSet(numRivers);
+        optionable = new BitSet(numRivers);
+        usable = new BitSet[numPunters];
+        for (int p = 0; p < numPunters; p++) {
+            usable[p] = new BitSet(numRivers);
+        }
+        for (int i = 0; i < numRivers; i++) {
+            count(i, 1);
+        }
+
+        mineIndices = this.mines.stream().mapToInt(this::siteIndex).filter(m -> m >= 0).sorted().toArray();
+
+        mineNumber = new int[siteIds.length];
+        Arrays.fill(mineNumber, -1);
+        mineDistances = new int[mineIndices.length][];
+        for (int k = 0; k < mineIndices.length; k++) {
+            mineNumber[mineIndices[k]] = k;
+            mineDistances[k] = bfs.getShortestPathLengths(mineIndices[k]);
+        }
+
+        networks = new PunterNetwork[numPunters];
+        for (int p = 0; p < numPunters; p++) {
+            networks[p] = new PunterNetwork(siteIds.length, mineIndices, mineDistances);
+        }
+        for (int i = 0; i < numRivers; i++) {
+            if (owner[i] >= 0) {
+                join(owner[i], i);
+            }
+            if (option[i] >= 0) {
+                join(option[i], i);
+            }
+        }
+    }
+
+    private static Set<Integer> siteIdsOf(Collection<Site> sites) {
+        Set<Integer> ids = new HashSet<>();
+        for (Site site : sites) {
+            ids.add(site.getId());
+        }
+        return ids;
+    }
+
+    /** Return the index of the given site ID, or -1 if there is no such site. */
+    private int siteIndex(int siteId) {
+        if (denseIds) {
+            return (siteId >= 0 && siteId < siteIds.length) ? siteId : -1;
+        }
+        int i = Arrays.binarySearch(siteIds, siteId);
+        return (i < 0) ? -1 : i;
+    }
+
+    private int opposite(int river, int site) {
+        return (riverSource[river] == site) ? riverTarget[river] : riverSource[river];
+    }
+
+    /**
+     * Find the index of the river with the given end sites, or -1.
+     * The order of source and target does not matter.
+     */
+    private int riverIndex(int source, int target) {
+        return riverByEnds.get(LongIntMap.pairKey(source, target));
+    }
+
+    private int riverIndex(River river) {
+        return riverIndex(river.getSource(), river.getTarget());
+    }
+
+    private boolean isClaimed(int river) {
+        return owner[river] >= 0;
+    }
+
+    private boolean canOption(int river, int punter) {
+        return option[river] < 0 && owner[river] >= 0 && owner[river] != punter;
+    }
+
+    private boolean canUse(int river, int punter) {
+        return owner[river] == punter || option[river] == punter;
+    }
+
+    /**
+     * Add the given river, in its current state, to the degree counters of its
+     * end sites and to the river sets. Use a sign of -1 to remove it.
+     */
+    private void count(int river, int sign) {
+        boolean add = sign > 0;
+        if (!isClaimed(river)) {
+            unclaimed.set(river, add);
+        } else {
+            usable[owner[river]].set(river, add);
+        }
+        if (option[river] >= 0) {
+            usable[option[river]].set(river, add);
+        }
+        if (canOption(river, myPunterId)) {
+            optionable.set(river, add);
+        }
+        int unclaimed = isClaimed(river) ? 0 : sign;
+        int own = canUse(river, myPunterId) ? sign : 0;
+        int optionable = canOption(river, myPunterId) ? sign : 0;
+        int s = riverSource[river];
+        int t = riverTarget[river];
+        unclaimedDegree[s] += unclaimed;
+        unclaimedDegree[t] += unclaimed;
+        ownDegree[s] += own;
+        ownDegree[t] += own;
+        optionableDegree[s] += optionable;
+        optionableDegree[t] += optionable;
+    }
+
+    private Set<River> view(BitSet members) {
+        return new RiverSet(rivers, members, this::riverIndex);
+    }
+
+    private Set<River> collectTouching(int siteId, IntPredicate predicate) {
+        Set<River> result = new HashSet<>();
+        int s = siteIndex(siteId);
+        if (s >= 0) {
+            for (int k = adjStart[s]; k < adjStart[s + 1]; k++) {
+                int r = adjRiver[k];
+                if (predicate.test(r)) {
+                    result.add(rivers[r]);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getMyPunterId() {
+        return myPunterId;
+    }
+
+    @Override
+    public int getNumPunters() {
+        return numPunters;
+    }
+
+    @Transient
+    @Override
+    public int getNumRivers() {
+        return rivers.length;
+    }
+
+    @Override
+    public int getMovesPerformed() {
+        return movesPerformed;
+    }
+
+    @Override
+    public int getOptionsUsed() {
+        return optionsUsed;
+    }
+
+    @Override
+    public void movePerformed() {
+        movesPerformed++;
+    }
+
+    @Override
+    public Set<Integer> getSites() {
+        return sites;
+    }
+
+    public Collection<River> getRivers() {
+        return Arrays.asList(rivers);
+    }
+
+    public java.util.Map<Integer, Integer> getCredits() {
+        return credits;
+    }
+
+    @Override
+    public River getRiverByIndex(int index) {
+        return rivers[index];
+    }
+
+    @Override
+    public int nextUnclaimedRiver(int fromIndex) {
+        return unclaimed.nextSetBit(fromIndex);
+    }
+
+    @Override
+    @Transient
+    public Set<River> getUnclaimedRivers() {
+        return view(unclaimed);
+    }
+
+    @Override
+    @Transient
+    public Set<River> getAvailableOptions() {
+        return view(optionable);
+    }
+
+    @Override
+    public Set<River> getRiversTouching(int siteId) {
+        return collectTouching(siteId, r -> true);
+    }
+
+    @Override
+    public Set<River> getUnclaimedRiversTouching(int siteId) {
+        return collectTouching(siteId, r -> !isClaimed(r));
+    }
+
+    @Override
+    public Set<River> getOpenRiversTouching(int siteId) {
+        if (!areOptionsActive() || getRemainingOptions() == 0) return getUnclaimedRiversTouching(siteId);
+        return collectTouching(siteId, r -> !isClaimed(r) || canOption(r, myPunterId));
+    }
+
+    @Override
+    public Set<River> getOwnRiversTouching(int siteId) {
+        return collectTouching(siteId, r -> canUse(r, myPunterId));
+    }
+
+    @Override
+    public int getDegree(int siteId) {
+        int s = siteIndex(siteId);
+        return (s < 0) ? 0 : adjStart[s + 1] - adjStart[s];
+    }
+
+    @Override
+    public int getUnclaimedDegree(int siteId) {
+        int s = siteIndex(siteId);
+        return (s < 0) ? 0 : unclaimedDegree[s];
+    }
+
+    @Override
+    public int getOwnDegree(int siteId) {
+        int s = siteIndex(siteId);
+        return (s < 0) ? 0 : ownDegree[s];
+    }
+
+    @Override
+    public int getOpenDegree(int siteId) {
+        int s = siteIndex(siteId);
+        if (s < 0) {
+            return 0;
+        }
+        if (!areOptionsActive() || getRemainingOptions() == 0) {
+            return unclaimedDegree[s];
+        }
+        return unclaimedDegree[s] + optionableDegree[s];
+    }
+
+    @Override
+    public Set<River> getRiversByOwner(int punter) {
+        return view(usable[punter]);
+    }
+
+    @Override
+    public void applyMoves(List<Move> moves) {
+        if (moves.size() > numPunters) {
+            throw new LogicException("too many previous moves: " + moves.size());
+        }
+        for (int i = 0; i < numPunters; i++) {
+            int pid = (myPunterId + i) % numPunters;
+            moves.stream().filter(m -> m.getPunter() == pid)
+                    .findAny()
+                    .ifPresent(this::applyMove);
+        }
+    }
+
+    @Override
+    public boolean applyMove(Move move) {
+        if (numTentativeMoves > 0) {
+            throw new LogicException("cannot apply " + move + " while tentative moves are outstanding");
+        }
+        return apply(move);
+    }
+
+    @Override
+    public boolean applyTentativeMove(Move move) {
+        int start = journalSize;
+        int punter = move.getPunter();
+        Integer cred = credits.get(punter);
+        boolean changed;
+        tentative = true;
+        try {
+            changed = apply(move);
+        } catch (RuntimeException e) {
+            rollback(start, punter, cred);
+            throw e;
+        } finally {
+            tentative = false;
+        }
+        record((cred == null) ? NO_CREDITS : cred);
+        record(punter);
+        record(start);
+        numTentativeMoves++;
+        return changed;
+    }
+
+    @Override
+    public void undoMove() {
+        if (numTentativeMoves == 0) {
+            throw new LogicException("no tentative move to undo");
+        }
+        int start = journal[--journalSize];
+        int punter = journal[--journalSize];
+        int cred = journal[--journalSize];
+        rollback(start, punter, (cred == NO_CREDITS) ? null : cred);
+        numTentativeMoves--;
+    }
+
+    @Override
+    @Transient
+    public int getNumTentativeMoves() {
+        return numTentativeMoves;
+    }
+
+    @Override
+    @Transient
+    public long getVersion() {
+        return events.getVersion();
+    }
+
+    @Override
+    public void addListener(GameStateListener listener) {
+        events.add(listener);
+    }
+
+    @Override
+    public void removeListener(GameStateListener listener) {
+        events.remove(listener);
+    }
+
+    private void record(int value) {
+        if (journalSize == journal.length) {
+            journal = Arrays.copyOf(journal, 2 * journal.length);
+        }
+        journal[journalSize++] = value;
+    }
+
+    /** Undo the river changes recorded since the given journal size, and restore the credits of the punter. */
+    private void rollback(int start, int punter, Integer cred) {
+        while (journalSize > start) {
+            int entry = journal[--journalSize];
+            int river = entry >> 2;
+            boolean isOption = (entry & 2) != 0;
+            int p = isOption ? option[river] : owner[river];
+            if ((entry & 1) != 0) {
+                networks[p].undo();
+            }
+            count(river, -1);
+            if (isOption) {
+                option[river] = -1;
+                rivers[river].setOption(-1);
+                if (p == myPunterId) optionsUsed--;
+            } else {
+                owner[river] = -1;
+                rivers[river].setOwner(-1);
+            }
+            count(river, 1);
+            events.released(p, river);
+        }
+        if (cred == null) {
+            credits.remove(punter);
+        } else {
+            credits.put(punter, cred);
+        }
+    }
+
+    private boolean apply(Move move) {
+        Move.ClaimData claim = move.getClaim();
+        if (claim != null) {
+            int river = getRiver(claim.source, claim.target);
+            if (isClaimed(river)) {
+                throw new LogicException("river " + rivers[river] + " claimed by " + claim.punter + " but already owned by " + owner[river]);
+            }
+            setOwner(river, claim.punter);
+            events.claimed(claim.punter, river, false);
+            return true;
+        }
+        Move.SplurgeData splurge = move.getSplurge();
+        if (splurge != null) {
+            if (!settings.isSplurges()) {
+                throw new LogicException("splurges not enabled: " + splurge);
+            }
+            int punter = splurge.punter;
+            int cred = credits.getOrDefault(punter, 0) + 1;
+            int n = splurge.route.size();
+            for (int i = 1; i < n; i++) {
+                int river = getRiver(splurge.route.get(i-1), splurge.route.get(i));
+                if (!isClaimed(river)) {
+                    setOwner(river, punter);
+                    events.claimed(punter, river, true);
+                } else if (takeOption(river, punter)) {
+                    events.optioned(punter, river, true);
+                } else {
+                    throw new LogicException("river " + rivers[river] + " not eligible for splurge");
+                }
+                cred--;
+            }
+            credits.put(punter, cred);
+            return true;
+        }
+        Move.ClaimData opt = move.getOption();
+        if (opt != null) {
+            if (!settings.isOptions()) {
+                throw new LogicException("options not enabled: " + opt);
+            }
+            int river = getRiver(opt.source, opt.target);
+            if (!takeOption(river, opt.punter)) {
+                throw new LogicException("river " + rivers[river] + " not eligible for option");
+            }
+            events.optioned(opt.punter, river, false);
+            return true;
+        }
+        Move.PassData pass = move.getPass();
+        if (pass != null) {
+            int punter = pass.punter;
+            int cred = credits.getOrDefault(punter, -1);
+            cred++;
+            credits.put(punter, cred);
+        }
+        return false;
+    }
+
+    private int getRiver(int source, int target) {
+        int river = riverIndex(source, target);
+        if (river < 0) {
+            throw new LogicException("no river " + source + "-" + target);
+        }
+        return river;
+    }
+
+    private void setOwner(int river, int punter) {
+        count(river, -1);
+        owner[river] = punter;
+        rivers[river].setOwner(punter);
+        count(river, 1);
+        boolean joined = join(punter, river);
+        if (tentative) {
+            record(river << 2 | (joined ? 1 : 0));
+        }
+    }
+
+    /**
+     * Add a river to the network of the given punter.
+     * @return {@code true} if this connected two components
+     */
+    private boolean join(int punter, int river) {
+        if (tentative) {
+            return networks[punter].addUndoable(riverSource[river], riverTarget[river]);
+        }
+        return networks[punter].add(riverSource[river], riverTarget[river]);
+    }
+
+    private boolean takeOption(int river, int punter) {
+        if (canOption(river, punter)) {
+            count(river, -1);
+            option[river] = punter;
+            rivers[river].setOption(punter);
+            count(river, 1);
+            boolean joined = join(punter, river);
+            if (tentative) {
+                record(river << 2 | 2 | (joined ? 1 : 0));
+            }
+            if (punter == myPunterId) optionsUsed++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Find the shortest route between two site IDs over the rivers accepted by the filter,
+     * in order from site1. Returns null if there is no route, and the empty list if
+     * both sites are identical.
+     */
+    private List<River> route(int site1, int site2, IntPredicate usable) {
+        if (site1 == site2) {
+            return Collections.emptyList();
+        }
+        int from = siteIndex(site1);
+        int to = siteIndex(site2);
+        if (from < 0 || to < 0) {
+            return null;
+        }
+        int[] path = bfs.getShortestPathEdges(from, to, usable);
+        if (path == null) {
+            return null;
+        }
+        List<River> result = new ArrayList<>(path.length);
+        for (int r : path) {
+            result.add(rivers[r]);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean canReach(int punter, int site1, int site2) {
+        if (site1 == site2) {
+            return true;
+        }
+        int s1 = siteIndex(site1);
+        int s2 = siteIndex(site2);
+        return s1 >= 0 && s2 >= 0 && networks[punter].connected(s1, s2);
+    }
+
+    @Override
+    public boolean canReachMine(int punter, int site) {
+        int s = siteIndex(site);
+        return s >= 0 && networks[punter].reachesMine(s);
+    }
+
+    @Override
+    public int getScore(int punter) {
+        return networks[punter].getScore();
+    }
+
+    private GraphMap getGraphMap() {
+        if (graphMap == null) {
+            graphMap = new GraphMap(sites, Arrays.asList(rivers));
+        }
+        return graphMap;
+    }
+
+    @Override
+    public int getShortestRouteLength(int site1, int site2) {
+        int s1 = siteIndex(site1);
+        int s2 = siteIndex(site2);
+        if (s1 >= 0 && s2 >= 0) {
+            if (mineNumber[s1] >= 0) {
+                return mineDistances[mineNumber[s1]][s2];
+            }
+            if (mineNumber[s2] >= 0) {
+                return mineDistances[mineNumber[s2]][s1];
+            }
+        }
+        return getGraphMap().getShortestRouteLength(site1, site2);
+    }
+
+    @Override
+    public List<River> getShortestRoute(int site1, int site2) {
+        return getGraphMap().getShortestRoute(site1, site2);
+    }
+
+    @Override
+    public List<River> getShortestOpenRoute(int punterId, int site1, int site2) {
+        int budget = settings.isOptions() ? Math.max(0, getRemainingOptions()) : 0;
+        if (budget == 0) {
+            List<River> path = route(site1, site2, r -> canUse(r, punterId) || !isClaimed(r));
+            return (path == null) ? Collections.emptyList() : path;
+        }
+        return openRoute(punterId, site1, site2, budget, 1);
+    }
+
+    @Override
+    public List<River> getCheapestOpenRoute(int punterId, int site1, int site2) {
+        int budget = settings.isOptions() ? Math.max(0, getRemainingOptions()) : 0;
+        return openRoute(punterId, site1, site2, budget, 0);
+    }
+
+    @Transient
+    @Override
+    public MineRoutes getMineRoutes() {
+        if (mineRoutes != null && mineRoutesVersion == events.getVersion()) {
+            return mineRoutes;
+        }
+        int budget = settings.isOptions() ? Math.max(0, getRemainingOptions()) : 0;
+        int n = mineIndices.length;
+        int[] mineIds = new int[n];
+        List<List<River>> routes = new ArrayList<>(Collections.nCopies(n * n, null));
+        int[] missingSteps = new int[n * n];
+        for (int i = 0; i < n; i++) {
+            mineIds[i] = siteIds[mineIndices[i]];
+            int[][] paths = bfs.getCheapestPathsEdges(mineIndices[i], mineIndices, r -> openCost(r, myPunterId, 0), budget);
+            for (int j = 0; j < n; j++) {
+                if (i == j) continue;
+                if (paths[j] == null) {
+                    missingSteps[i * n + j] = -1;
+                    continue;
+                }
+                List<River> route = new ArrayList<>(paths[j].length);
+                int missing = 0;
+                for (int r : paths[j]) {
+                    route.add(rivers[r]);
+                    if (!canUse(r, myPunterId)) {
+                        missing++;
+                    }
+                }
+                routes.set(i * n + j, route);
+                missingSteps[i * n + j] = missing;
+            }
+        }
+        mineRoutes = new MineRoutes(myPunterId, mineIds, routes, missingSteps);
+        mineRoutesVersion = events.getVersion();
+        return mineRoutes;
+    }
+
+    private List<River> openRoute(int punterId, int site1, int site2, int budget, int ownCost) {
+        int from = siteIndex(site1);
+        int to = siteIndex(site2);
+        if (site1 == site2 || from < 0 || to < 0) {
+            return Collections.emptyList();
+        }
+        int[] path = bfs.getCheapestPathEdges(from, to, r -> openCost(r, punterId, ownCost), budget);
+        if (path == null) {
+            return Collections.emptyList();
+        }
+        List<River> result = new ArrayList<>(path.length);
+        for (int r : path) {
+            result.add(rivers[r]);
+        }
+        return result;
+    }
+
+    /**
+     * Cost of a river in an open route search for the punter, see
+     * {@link Bfs#getCheapestPathEdges(int, int, java.util.function.IntUnaryOperator, int)}:
+     * rivers the punter can use cost ownCost, unclaimed rivers cost 1, and
+     * rivers the punter could option cost 1 and use up one option.
+     */
+    private int openCost(int river, int punter, int ownCost) {
+        if (canUse(river, punter)) {
+            return ownCost;
+        }
+        if (!isClaimed(river)) {
+            return 1;
+        }
+        return canOption(river, punter) ? 1 + Bfs.USES_BUDGET : -1;
+    }
+
+    @Override
+    public int getPotentialPoints(River river) {
+        if (river.isClaimed()) return 0;
+        int s = siteIndex(river.getSource());
+        int t = siteIndex(river.getTarget());
+        if (s < 0 || t < 0) return 0;
+        return networks[myPunterId].gain(s, t);
+    }
+
+    @Override
+    public int getPotentialPoints(River river1, River river2) {
+        if (river1.isClaimed() || river2.isClaimed()) return 0;
+        int s1 = siteIndex(river1.getSource());
+        int t1 = siteIndex(river1.getTarget());
+        int s2 = siteIndex(river2.getSource());
+        int t2 = siteIndex(river2.getTarget());
+        if (s1 < 0 || t1 < 0 || s2 < 0 || t2 < 0) return 0;
+        return networks[myPunterId].gain(s1, t1, s2, t2);
+    }
+
+    @Override
+    public Set<Integer> getMines() {
+        return mines;
+    }
+
+    @Override
+    public Settings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public void setFutures(Future[] futures) {
+        this.futures = futures;
+    }
+
+    @Override
+    public Future[] getFutures() {
+        return futures;
+    }
+
+    @Override
+    public boolean isFutureComplete(Future future) {
+        return canReach(myPunterId, future.getSource(), future.getTarget());
+    }
+
+    @Override
+    public boolean isOnRiver(int punter, int site) {
+        int s = siteIndex(site);
+        if (s >= 0) {
+            for (int k = adjStart[s]; k < adjStart[s + 1]; k++) {
+                if (canUse(adjRiver[k], punter)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getSplurgeCredits(int punterId) {
+        return credits.get(punterId);
+    }
+
+    @Override
+    public SiteMapping getSiteMapping() {
+        return siteMapping;
+    }
+
+    @Override
+    public void setSiteMapping(SiteMapping siteMapping) {
+        this.siteMapping = siteMapping;
+    }
+}
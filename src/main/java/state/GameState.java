@@ -57,10 +57,29 @@ public interface GameState {
     /** Get all site IDs, including mines. */
     Set<Integer> getSites();
 
+    /**
+     * Get the unclaimed rivers.
+     *
+     * This and the other river sets of a state are read-only views: later
+     * moves, tentative ones and undos included, show through them. The
+     * state must therefore not be changed while iterating over them; copy
+     * a set first if it is needed across moves.
+     */
     Set<River> getUnclaimedRivers();
 
     /**
-     * Get rivers we could buy an option for.
+     * The river with the given index. Rivers are numbered 0..getNumRivers()-1
+     * in order of their source and then target site, so copies of a state number
+     * them alike. They can be iterated without allocating, e.g.
+     * {@code for (int i = nextUnclaimedRiver(0); i >= 0; i = nextUnclaimedRiver(i + 1))}.
+     */
+    River getRiverByIndex(int index);
+
+    /** Index of the first unclaimed river at or after the given index, or -1 if there is none. */
+    int nextUnclaimedRiver(int fromIndex);
+
+    /**
+     * Get rivers we could buy an option for, as a view like {@link #getUnclaimedRivers()}.
      */
     Set<River> getAvailableOptions();
 
@@ -80,13 +99,29 @@ public interface GameState {
         return getRiversTouching(siteId).size();
     }
 
+    /** Number of unclaimed rivers touching the site. */
+    default int getUnclaimedDegree(int siteId) {
+        return getUnclaimedRiversTouching(siteId).size();
+    }
+
+    /** Number of rivers touching the site that I have claimed or optioned. */
+    default int getOwnDegree(int siteId) {
+        return getOwnRiversTouching(siteId).size();
+    }
+
+    /** Number of rivers touching the site that I could still claim or option. */
+    default int getOpenDegree(int siteId) {
+        return getOpenRiversTouching(siteId).size();
+    }
+
     @Transient
     default Set<River> getOwnRivers() {
         return getRiversByOwner(getMyPunterId());
     }
 
     /**
-     * Get the set of rivers claimed or optioned by the given punter.
+     * Get the set of rivers claimed or optioned by the given punter,
+     * as a view like {@link #getUnclaimedRivers()}.
      */
     Set<River> getRiversByOwner(int punter);
 
@@ -97,6 +132,33 @@ public interface GameState {
      */
     boolean applyMove(Move move);
 
+    /**
+     * Apply a move so that it can be taken back with {@link #undoMove()},
+     * e.g. while searching. Tentative moves are undone in reverse order,
+     * and applyMove must not be called while any are outstanding.
+     * @return the same as {@link #applyMove}
+     */
+    boolean applyTentativeMove(Move move);
+
+    /** Take back the most recent tentative move. */
+    void undoMove();
+
+    /** Number of tentative moves that have not been undone. */
+    @Transient
+    int getNumTentativeMoves();
+
+    /**
+     * Number of river changes so far, including tentative moves and their undo.
+     * Results computed from the state stay valid while the version is the same.
+     */
+    @Transient
+    long getVersion();
+
+    /** Notify the listener of every river change from now on. */
+    void addListener(GameStateListener listener);
+
+    void removeListener(GameStateListener listener);
+
     /** Can a punter go from site1 to site2 using his rivers? */
     boolean canReach(int punter, int site1, int site2);
 
@@ -116,10 +178,27 @@ public interface GameState {
 
     /**
      * Get the shortest route from site1 to site2 not using rivers claimed
-     * by others than the given punter.
+     * by others than the given punter, except for as many rivers the punter
+     * could option as there are options left.
      */
     List<River> getShortestOpenRoute(int punterId, int site1, int site2);
 
+    /**
+     * Get the route from site1 to site2 that needs the fewest rivers the punter
+     * does not have yet. Rivers the punter can use cost nothing; unclaimed
+     * rivers, and up to as many rivers the punter could option as there are
+     * options left, cost one step each.
+     * @return the route in order from site1, or the empty list if there is none
+     */
+    List<River> getCheapestOpenRoute(int punterId, int site1, int site2);
+
+    /**
+     * Cheapest open routes for me between all pairs of mines.
+     * The result must not be used after the version has changed.
+     */
+    @Transient
+    MineRoutes getMineRoutes();
+
     /**
      * Compute potential score increase from claiming the given river.
      */
@@ -146,9 +225,28 @@ public interface GameState {
 
     boolean isFutureComplete(Future future);
 
-    int missingStepsForFuture(Future future);
+    /**
+     * The cheapest open route for me to complete the future, with the
+     * number of rivers I still need on it and the first of them.
+     */
+    default OpenRoute getFutureRoute(Future future) {
+        return new OpenRoute(getMyPunterId(), getCheapestOpenRoute(getMyPunterId(), future.getSource(), future.getTarget()));
+    }
+
+    /**
+     * Number of rivers I still need to complete the future, along the
+     * cheapest open route, or -1 if there is no such route.
+     */
+    default int missingStepsForFuture(Future future) {
+        return getFutureRoute(future).getMissingSteps();
+    }
 
-    River nextStepForFuture(Future future);
+    /**
+     * The first river I still need along the cheapest open route for the future.
+     */
+    default River nextStepForFuture(Future future) {
+        return getFutureRoute(future).getNextStep();
+    }
 
     /**
      * Is the given site part of a river claimed by the given punter?
@@ -172,5 +270,13 @@ public interface GameState {
 
     int getSplurgeCredits(int punter);
 
+    /**
+     * Translation between protocol site IDs and the dense site IDs
+     * used by this state. Null if the state was created without one.
+     */
+    SiteMapping getSiteMapping();
+
+    void setSiteMapping(SiteMapping siteMapping);
+
     void applyMoves(List<Move> moves);
 }
@@ -4,12 +4,39 @@ import io.Setup;
 
 public class GameStateFactory {
 
+    public enum Implementation {
+        /** Sets of river objects, see {@link MapBasedGameState}. */
+        MAP_BASED,
+        /** Dense int arrays, see {@link CompactGameState}. */
+        COMPACT
+    }
+
+    private final Implementation implementation;
+
+    /**
+     * Use the implementation given by the system property "punter.state"
+     * ("map_based" or "compact"), defaulting to the map based one.
+     */
+    public GameStateFactory() {
+        this(Implementation.valueOf(System.getProperty("punter.state", "map_based").toUpperCase()));
+    }
+
+    public GameStateFactory(Implementation implementation) {
+        this.implementation = implementation;
+    }
+
     public GameState create(Setup.Request setup) {
-        return new MapBasedGameState(setup);
+        switch (implementation) {
+            case COMPACT:   return new CompactGameState(setup);
+            default:        return new MapBasedGameState(setup);
+        }
     }
 
     public Class<? extends GameState> getImplementationClass() {
-        return MapBasedGameState.class;
+        switch (implementation) {
+            case COMPACT:   return CompactGameState.class;
+            default:        return MapBasedGameState.class;
+        }
     }
 
 }
@@ -0,0 +1,22 @@
+package state;
+
+/**
+ * Notified of every change to the rivers of a {@link GameState}, including
+ * tentative moves and their undo, right after the change. Rivers are given
+ * by index, see {@link GameState#getRiverByIndex}.
+ */
+public interface GameStateListener {
+
+    /** The punter claimed the river, with a claim or as part of a splurge. */
+    default void riverClaimed(int punter, int river, boolean splurge) {
+    }
+
+    /** The punter bought an option on the river, with an option or as part of a splurge. */
+    default void riverOptioned(int punter, int river, boolean splurge) {
+    }
+
+    /** A tentative move was undone, so the punter no longer has the river. */
+    default void riverReleased(int punter, int river) {
+    }
+
+}
@@ -3,68 +3,187 @@ package state;
 import io.River;
 
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 /**
  * Bfs with caching.
+ *
+ * Routes are cached in a fixed number of slots, keyed by the ordered pair
+ * of end sites. The cache is two-way set associative: each pair can go into
+ * one of two slots, and a new route replaces the one that was used less
+ * recently. Routes are stored as the arrays of edge indices found by Bfs.
  */
 class GraphMap {
 
+    static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /** Cached result for pairs without a route. */
+    private static final int[] NO_ROUTE = new int[0];
+
     private final Bfs bfs;
 
+    private final long[] cacheKeys;
+    private final int[][] cacheRoutes;
+    /** Per set of two slots: the slot to replace next. */
+    private final byte[] replace;
+    private final int setMask;
+
+    private long hits = 0;
+    private long misses = 0;
+
     GraphMap(Iterable<Integer> sites, Collection<River> rivers) {
+        this(sites, rivers, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize maximum number of cached routes, rounded up to a power of two
+     *                  and at least two (one set of two slots)
+     */
+    GraphMap(Iterable<Integer> sites, Collection<River> rivers, int cacheSize) {
         bfs = new Bfs(rivers);
+        int slots = Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1;
+        int numSets = slots / 2;
+        cacheKeys = new long[slots];
+        cacheRoutes = new int[slots][];
+        replace = new byte[numSets];
+        setMask = numSets - 1;
     }
 
     /**
      * Return the length of the shortest route or -1 if no route exists.
      */
     int getShortestRouteLength(int a, int b) {
-        List<River> path = getShortestPath(a, b);
-        return (path == null) ? -1 : path.size();
+        if (a == b) {
+            return 0;
+        }
+        int[] route = getShortestPath(a, b);
+        return (route == NO_ROUTE) ? -1 : route.length;
     }
 
     List<River> getShortestRoute(int a, int b) {
-        List<River> path = getShortestPath(a, b);
-        if (path == null) {
+        if (a == b) {
             return Collections.emptyList();
         }
-        return path;
+        return new RouteList(getShortestPath(a, b));
+    }
+
+    /**
+     * Get the shortest route using only the rivers accepted by the filter,
+     * or the empty list if there is none. Such routes are not cached.
+     */
+    List<River> getShortestRoute(int a, int b, Predicate<River> usable) {
+        if (a == b || !(containsSite(a) && containsSite(b))) {
+            return Collections.emptyList();
+        }
+        int[] route = bfs.getShortestPathEdges(a, b, e -> usable.test(bfs.getEdge(e)));
+        return (route == null) ? Collections.emptyList() : new RouteList(route);
+    }
+
+    /**
+     * Get the route with the lowest total cost, or the empty list if there is none.
+     * @param cost cost of each river: 0, 1, or -1 if it cannot be used, plus
+     *  {@link Bfs#USES_BUDGET} for rivers that use up one unit of the budget
+     */
+    List<River> getCheapestRoute(int a, int b, ToIntFunction<River> cost, int budget) {
+        if (a == b || !(containsSite(a) && containsSite(b))) {
+            return Collections.emptyList();
+        }
+        int[] route = bfs.getCheapestPathEdges(a, b, e -> cost.applyAsInt(bfs.getEdge(e)), budget);
+        return (route == null) ? Collections.emptyList() : new RouteList(route);
+    }
+
+    /**
+     * Like {@link #getCheapestRoute}, from one site to each of the given
+     * sites, with one search.
+     * @return the route to each target, null if there is none
+     */
+    List<List<River>> getCheapestRoutes(int a, int[] targets, ToIntFunction<River> cost, int budget) {
+        int[][] paths = bfs.getCheapestPathsEdges(a, targets, e -> cost.applyAsInt(bfs.getEdge(e)), budget);
+        List<List<River>> routes = new ArrayList<>(paths.length);
+        for (int[] path : paths) {
+            routes.add((path == null) ? null : new RouteList(path));
+        }
+        return routes;
     }
 
     boolean hasRoute(int a, int b) {
-        return getShortestPath(a, b) != null;
+        return a == b || getShortestPath(a, b) != NO_ROUTE;
     }
 
     boolean containsSite(int site) {
         return bfs.containsVertex(site);
     }
 
-    ArrayNatMap<Integer> getAllShortestRouteLengths(int source) {
+    IntNatMap getAllShortestRouteLengths(int source) {
         return bfs.getAllShortestPathLengths(source);
     }
 
-    private List<River> getShortestPath(int a, int b) {
-        if (a == b) {
-            return Collections.emptyList();
-        }
+    long getCacheHits() {
+        return hits;
+    }
+
+    long getCacheMisses() {
+        return misses;
+    }
+
+    /**
+     * Return the number of routes the cache can hold.
+     */
+    int getCacheCapacity() {
+        return cacheKeys.length;
+    }
+
+    /**
+     * Find the shortest route between two different sites as river indices,
+     * or NO_ROUTE if there is none.
+     */
+    private int[] getShortestPath(int a, int b) {
         if (!(containsSite(a) && containsSite(b))) {
-            return null;
+            return NO_ROUTE;
         }
-        River key = new River(a,b); // NOT a river
-        List<River> path = cache.get(key);
-        if (path == null) {
-            path = bfs.getShortestPath(a, b);
-            if (path == null) {
-                cache.put(key, Collections.emptyList());
-            } else {
-                cache.put(key, path);
-            }
-            return path;
+        long key = ((long) a << 32) | (b & 0xffffffffL);
+        int set = LongIntMap.hash(key) & setMask;
+        int slot = 2 * set;
+        if (cacheRoutes[slot] != null && cacheKeys[slot] == key) {
+            hits++;
+            replace[set] = 1;
+            return cacheRoutes[slot];
         }
-        return path.isEmpty() ? null : path;
+        if (cacheRoutes[slot + 1] != null && cacheKeys[slot + 1] == key) {
+            hits++;
+            replace[set] = 0;
+            return cacheRoutes[slot + 1];
+        }
+        misses++;
+        int[] route = bfs.getShortestPathEdges(a, b);
+        if (route == null) {
+            route = NO_ROUTE;
+        }
+        slot += replace[set];
+        cacheKeys[slot] = key;
+        cacheRoutes[slot] = route;
+        replace[set] ^= 1;
+        return route;
     }
 
-    // uses empty list to represent no path!
-    private final Map<River, List<River>> cache = new HashMap<>();
+    /** Read-only list of the rivers of a cached route. */
+    private class RouteList extends AbstractList<River> implements RandomAccess {
+        private final int[] route;
+
+        RouteList(int[] route) {
+            this.route = route;
+        }
+
+        @Override
+        public River get(int index) {
+            return bfs.getEdge(route[index]);
+        }
+
+        @Override
+        public int size() {
+            return route.length;
+        }
+    }
 
 }
@@ -0,0 +1,57 @@
+package state;
+
+import java.util.Arrays;
+
+/**
+ * Map for int keys >= 0 to int values, backed by an int array.
+ * Keys without a value map to {@link #ABSENT}, which cannot be stored.
+ */
+public class IntNatMap {
+
+    public static final int ABSENT = Integer.MIN_VALUE;
+
+    private int[] values;
+    private int size;
+
+    public IntNatMap(int expectedMaxKey) {
+        values = new int[expectedMaxKey + 1];
+        Arrays.fill(values, ABSENT);
+        size = 0;
+    }
+
+    /** Return the value for the key, or ABSENT. */
+    public int get(int key) {
+        if (key >= values.length) {
+            return ABSENT;
+        }
+        return values[key];
+    }
+
+    /** Return the previous value for the key, or ABSENT. */
+    public int put(int key, int value) {
+        if (value == ABSENT) {
+            throw new IllegalArgumentException("cannot store ABSENT");
+        }
+        if (key >= values.length) {
+            int newSize = Math.max(2 * values.length, key + 1);
+            int oldSize = values.length;
+            values = Arrays.copyOf(values, newSize);
+            Arrays.fill(values, oldSize, newSize, ABSENT);
+        }
+        int oldValue = values[key];
+        values[key] = value;
+        if (oldValue == ABSENT) {
+            size++;
+        }
+        return oldValue;
+    }
+
+    public boolean containsKey(int key) {
+        return key < values.length && values[key] != ABSENT;
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
@@ -4,6 +4,7 @@ import java.util.NoSuchElementException;
 
 /**
  * Array based FIFO queue for int values.
+ * Values can also be added at the front, so it can serve as a deque.
  */
 public class IntQueue {
 
@@ -38,6 +39,20 @@ public class IntQueue {
         return value;
     }
 
+    public void addFirst(int value) {
+        if (size == values.length) {
+            grow();
+        }
+        start = (start == 0) ? values.length - 1 : start - 1;
+        values[start] = value;
+        size++;
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
     public void addLast(int value) {
         if (size == values.length) {
             grow();
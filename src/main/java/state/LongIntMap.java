@@ -0,0 +1,91 @@
+package state;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to int values >= 0.
+ * Uses linear probing; a value of -1 marks an empty slot.
+ */
+public class LongIntMap {
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, 2 * expectedSize - 1)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, -1);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /**
+     * Key for an unordered pair of ints, e.g. the end sites of a river.
+     */
+    public static long pairKey(int a, int b) {
+        return (a <= b)
+                ? ((long) a << 32) | (b & 0xffffffffL)
+                : ((long) b << 32) | (a & 0xffffffffL);
+    }
+
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /** Return the value for the key, or -1 if the key is not present. */
+    public int get(long key) {
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int value = values[i];
+            if (value < 0 || keys[i] == key) {
+                return value;
+            }
+        }
+    }
+
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value " + value);
+        }
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            if (values[i] < 0) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(2 * oldKeys.length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] >= 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
@@ -5,15 +5,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.beans.Transient;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 /**
  * Game state with roughly the same representation as in the setup message.
- * Does not store precomputed information.
+ * Apart from indexes over the fixed map structure and per-site degree
+ * counters, does not store precomputed information.
  */
 class MapBasedGameState implements GameState {
     private static final Logger LOG = LoggerFactory.getLogger(MapBasedGameState.class);
@@ -37,11 +38,64 @@ class MapBasedGameState implements GameState {
     }
 
     private GraphMap graphMap;
+    private River[] riverArray;
+    private LongIntMap riverIndex;
+    private ArrayNatMap<Set<River>> riversBySite;
+    /** Per site ID, kept up to date by apply and restore once the site index is built. */
+    private int[] unclaimedDegree;
+    private int[] ownDegree;
+    private int[] optionableDegree;
+    /** Per river index, kept up to date like the degree counters. */
+    private BitSet unclaimedRivers;
+    /** Rivers I could buy an option for. */
+    private BitSet optionableRivers;
+    /** Per punter: rivers claimed or optioned by the punter. */
+    private BitSet[] usableRivers;
     private GraphMap[] graphMapByPunter = null;
+    private UnionFind[] componentsByPunter = null;
+    private java.util.Map<Integer, IntNatMap> mineDistances = null;
     private Future[] futures;
+    private SiteMapping siteMapping;
     private Settings settings;
 
     private int score = -1;
+    private int maxSiteId = -1;
+
+    private final Deque<Undo> tentativeMoves = new ArrayDeque<>();
+    /** Is a tentative move being applied? Its unions are then made undoable. */
+    private boolean tentative = false;
+    private final StateEvents events = new StateEvents();
+    /** Cheapest open routes between the mines, valid for mineRoutesVersion. */
+    private MineRoutes mineRoutes;
+    private long mineRoutesVersion = -1;
+
+    /**
+     * What a tentative move changed: the previous owner and option of each
+     * river it touched, and the previous options used and credits.
+     */
+    private static class Undo {
+        final int punter;
+        final int optionsUsed;
+        final Integer credits;
+        final List<River> rivers = new ArrayList<>();
+        final List<int[]> ownerAndOption = new ArrayList<>();
+        /** Components of the punter before the move, if built, and their undoable unions at that time. */
+        final UnionFind components;
+        final int numUnions;
+
+        Undo(int punter, int optionsUsed, Integer credits, UnionFind components) {
+            this.punter = punter;
+            this.optionsUsed = optionsUsed;
+            this.credits = credits;
+            this.components = components;
+            this.numUnions = (components == null) ? 0 : components.getNumUndoable();
+        }
+
+        void save(River river) {
+            rivers.add(river);
+            ownerAndOption.add(new int[] { river.getOwner(), river.getOption() });
+        }
+    }
 
     public MapBasedGameState() {}
 
@@ -53,6 +107,8 @@ class MapBasedGameState implements GameState {
         mines = setup.getMap().getMines();
         settings = setup.getSettings();
         graphMap = null;
+        // do this during setup, where we have more time
+        getMineDistances();
     }
 
     @Override
@@ -71,6 +127,20 @@ class MapBasedGameState implements GameState {
         return graphMap;
     }
 
+    /**
+     * Distances from each mine to all sites on the full map.
+     * They never change during a game, so they are computed once.
+     */
+    private java.util.Map<Integer, IntNatMap> getMineDistances() {
+        if (mineDistances == null) {
+            mineDistances = new HashMap<>();
+            for (int mine : getMines()) {
+                mineDistances.put(mine, getGraphMap().getAllShortestRouteLengths(mine));
+            }
+        }
+        return mineDistances;
+    }
+
     private GraphMap getGraphMap(int punter) {
         if (graphMapByPunter == null) {
             graphMapByPunter = new GraphMap[getNumPunters()];
@@ -81,6 +151,54 @@ class MapBasedGameState implements GameState {
         return graphMapByPunter[punter];
     }
 
+    /**
+     * Sites connected by the rivers the punter can use.
+     * Built on first use and then kept up to date by applyMove.
+     */
+    private UnionFind getComponents(int punter) {
+        if (componentsByPunter == null) {
+            componentsByPunter = new UnionFind[getNumPunters()];
+        }
+        if (componentsByPunter[punter] == null) {
+            UnionFind components = new UnionFind(getMaxSiteId() + 1);
+            for (int mine : getMines()) {
+                components.mark(mine);
+            }
+            for (River r : getRiversByOwner(punter)) {
+                components.union(r.getSource(), r.getTarget());
+            }
+            componentsByPunter[punter] = components;
+        }
+        return componentsByPunter[punter];
+    }
+
+    private void addToComponents(int punter, River river) {
+        UnionFind components = getBuiltComponents(punter);
+        if (components == null) {
+            return;
+        }
+        if (tentative) {
+            components.unionUndoable(river.getSource(), river.getTarget());
+        } else {
+            components.union(river.getSource(), river.getTarget());
+        }
+    }
+
+    private UnionFind getBuiltComponents(int punter) {
+        return (componentsByPunter == null) ? null : componentsByPunter[punter];
+    }
+
+    private int getMaxSiteId() {
+        if (maxSiteId < 0) {
+            maxSiteId = getSites().stream().mapToInt(Integer::intValue).max().orElse(0);
+        }
+        return maxSiteId;
+    }
+
+    private boolean isSite(int siteId) {
+        return siteId >= 0 && siteId <= getMaxSiteId();
+    }
+
     @Override
     public int getMyPunterId() {
         return myPunterId;
@@ -120,61 +238,179 @@ class MapBasedGameState implements GameState {
     @Override
     @Transient
     public Set<River> getAvailableOptions() {
-        int punter = getMyPunterId();
-        return getRivers().stream()
-                .filter(r -> r.canOption(punter))
-                .collect(Collectors.toSet());
+        return view(() -> optionableRivers);
     }
 
     @Override
     @Transient
     public Set<River> getUnclaimedRivers() {
-        return getRivers().stream()
-                .filter(r -> !r.isClaimed())
-                .collect(Collectors.toSet());
+        return view(() -> unclaimedRivers);
+    }
+
+    /** A view of the rivers in one of the river sets kept by count. */
+    private Set<River> view(Supplier<BitSet> members) {
+        if (riversBySite == null) {
+            buildSiteIndex();
+        }
+        return new RiverSet(getRiverArray(), members.get(), this::indexOf);
+    }
+
+    /**
+     * Rivers touching the given site, from an index built on first use
+     * together with the degree counters and river sets.
+     */
+    private Set<River> getIncidentRivers(int siteId) {
+        if (riversBySite == null) {
+            buildSiteIndex();
+        }
+        Set<River> rs = riversBySite.get(siteId);
+        return (rs == null) ? Collections.emptySet() : rs;
     }
 
+    private void buildSiteIndex() {
+        ArrayNatMap<Set<River>> index = new ArrayNatMap<>(getMaxSiteId());
+        for (River r : getRivers()) {
+            addIncidentRiver(index, r.getSource(), r);
+            addIncidentRiver(index, r.getTarget(), r);
+        }
+        for (int site : getSites()) {
+            Set<River> rs = index.get(site);
+            if (rs != null) {
+                index.put(site, Collections.unmodifiableSet(rs));
+            }
+        }
+        unclaimedDegree = new int[getMaxSiteId() + 1];
+        ownDegree = new int[getMaxSiteId() + 1];
+        optionableDegree = new int[getMaxSiteId() + 1];
+        int numRivers = getRiverArray().length;
+        unclaimedRivers = new BitSet(numRivers);
+        optionableRivers = new BitSet(numRivers);
+        usableRivers = new BitSet[numPunters];
+        for (int p = 0; p < numPunters; p++) {
+            usableRivers[p] = new BitSet(numRivers);
+        }
+        riversBySite = index;
+        for (River r : getRivers()) {
+            count(r, 1);
+        }
+    }
+
+    private static void addIncidentRiver(ArrayNatMap<Set<River>> index, int siteId, River river) {
+        Set<River> rs = index.get(siteId);
+        if (rs == null) {
+            rs = new HashSet<>();
+            index.put(siteId, rs);
+        }
+        rs.add(river);
+    }
+
+    /**
+     * Add (sign 1) or remove (sign -1) the river from the degree counters
+     * of its end sites and from the river sets, according to its current
+     * owner and option.
+     */
+    private void count(River river, int sign) {
+        if (riversBySite == null) {
+            return;
+        }
+        boolean add = sign > 0;
+        int i = indexOf(river);
+        if (!river.isClaimed()) {
+            unclaimedRivers.set(i, add);
+        } else {
+            usableRivers[river.getOwner()].set(i, add);
+        }
+        if (river.getOption() >= 0) {
+            usableRivers[river.getOption()].set(i, add);
+        }
+        if (river.canOption(myPunterId)) {
+            optionableRivers.set(i, add);
+        }
+        int unclaimed = river.isClaimed() ? 0 : sign;
+        int own = river.canUse(myPunterId) ? sign : 0;
+        int optionable = river.canOption(myPunterId) ? sign : 0;
+        int s = river.getSource();
+        int t = river.getTarget();
+        unclaimedDegree[s] += unclaimed;
+        unclaimedDegree[t] += unclaimed;
+        ownDegree[s] += own;
+        ownDegree[t] += own;
+        optionableDegree[s] += optionable;
+        optionableDegree[t] += optionable;
+    }
+
+    /**
+     * The rivers touching the site that satisfy the predicate, given how
+     * many there are. If none or all of them do, no set is allocated.
+     */
+    private Set<River> collectTouching(int siteId, int count, Predicate<River> predicate) {
+        Set<River> rs = getIncidentRivers(siteId);
+        if (count == 0) {
+            return Collections.emptySet();
+        }
+        if (count == rs.size()) {
+            return rs;
+        }
+        Set<River> result = new HashSet<>(2 * count);
+        for (River r : rs) {
+            if (predicate.test(r)) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    /** A read-only set from the site index. */
     @Override
     public Set<River> getRiversTouching(int siteId) {
-        return getRivers().stream()
-                .filter(r -> r.touches(siteId))
-                .collect(Collectors.toSet());
+        return getIncidentRivers(siteId);
     }
 
     @Override
     public Set<River> getUnclaimedRiversTouching(int siteId) {
-        return getRivers().stream()
-                .filter(r -> r.touches(siteId) && !r.isClaimed())
-                .collect(Collectors.toSet());
+        return collectTouching(siteId, getUnclaimedDegree(siteId), r -> !r.isClaimed());
     }
 
     @Override
     public Set<River> getOpenRiversTouching(int siteId) {
         if (!areOptionsActive() || getRemainingOptions() == 0) return getUnclaimedRiversTouching(siteId);
-        return getRivers().stream()
-                .filter(r -> r.touches(siteId) && (!r.isClaimed() || r.canOption(myPunterId)))
-                .collect(Collectors.toSet());
+        return collectTouching(siteId, getOpenDegree(siteId), r -> !r.isClaimed() || r.canOption(myPunterId));
     }
 
     @Override
     public Set<River> getOwnRiversTouching(int siteId) {
-        return getRivers().stream()
-                .filter(r -> r.canUse(myPunterId) && r.touches(siteId))
-                .collect(Collectors.toSet());
+        return collectTouching(siteId, getOwnDegree(siteId), r -> r.canUse(myPunterId));
     }
 
     @Override
     public int getDegree(int siteId) {
-        return (int) getRivers().stream()
-                .filter(r -> r.touches(siteId))
-                .count();
+        return getIncidentRivers(siteId).size();
+    }
+
+    @Override
+    public int getUnclaimedDegree(int siteId) {
+        getIncidentRivers(siteId);
+        return isSite(siteId) ? unclaimedDegree[siteId] : 0;
+    }
+
+    @Override
+    public int getOwnDegree(int siteId) {
+        getIncidentRivers(siteId);
+        return isSite(siteId) ? ownDegree[siteId] : 0;
+    }
+
+    @Override
+    public int getOpenDegree(int siteId) {
+        int n = getUnclaimedDegree(siteId);
+        if (!areOptionsActive() || getRemainingOptions() == 0 || !isSite(siteId)) {
+            return n;
+        }
+        return n + optionableDegree[siteId];
     }
 
     @Override
     public Set<River> getRiversByOwner(int punter) {
-        return getRivers().stream()
-                .filter(r -> r.canUse(punter))
-                .collect(Collectors.toSet());
+        return view(() -> usableRivers[punter]);
     }
 
     /**
@@ -182,10 +418,45 @@ class MapBasedGameState implements GameState {
      * The order of source and target does not matter.
      */
     private Optional<River> getRiver(int source, int target) {
-        return getRivers().stream()
-                .filter(r -> (r.getSource() == source && r.getTarget() == target)
-                          || (r.getSource() == target && r.getTarget() == source))
-                .findAny();
+        getRiverArray();
+        int i = riverIndex.get(LongIntMap.pairKey(source, target));
+        return (i < 0) ? Optional.empty() : Optional.of(riverArray[i]);
+    }
+
+    private int indexOf(River river) {
+        getRiverArray();
+        return riverIndex.get(LongIntMap.pairKey(river.getSource(), river.getTarget()));
+    }
+
+    /**
+     * The rivers in order of their end sites, with an index by end sites, built on first use.
+     */
+    private River[] getRiverArray() {
+        if (riverArray == null) {
+            riverArray = getRivers().toArray(new River[getRivers().size()]);
+            Arrays.sort(riverArray, Comparator.comparingInt(River::getSource).thenComparingInt(River::getTarget));
+            riverIndex = new LongIntMap(riverArray.length);
+            for (int i = 0; i < riverArray.length; i++) {
+                riverIndex.put(LongIntMap.pairKey(riverArray[i].getSource(), riverArray[i].getTarget()), i);
+            }
+        }
+        return riverArray;
+    }
+
+    @Override
+    public River getRiverByIndex(int index) {
+        return getRiverArray()[index];
+    }
+
+    @Override
+    public int nextUnclaimedRiver(int fromIndex) {
+        River[] rivers = getRiverArray();
+        for (int i = fromIndex; i < rivers.length; i++) {
+            if (!rivers[i].isClaimed()) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     private void invalidateCaches(int punter) {
@@ -217,14 +488,122 @@ class MapBasedGameState implements GameState {
      */
     @Override
     public boolean applyMove(Move move) {
+        if (!tentativeMoves.isEmpty()) {
+            throw new LogicException("cannot apply " + move + " while tentative moves are outstanding");
+        }
+        return apply(move);
+    }
+
+    @Override
+    public boolean applyTentativeMove(Move move) {
+        int punter = move.getPunter();
+        Undo undo = new Undo(punter, optionsUsed, credits.get(punter), getBuiltComponents(punter));
+        if (move.getClaim() != null) {
+            getRiver(move.getClaim().source, move.getClaim().target).ifPresent(undo::save);
+        } else if (move.getOption() != null) {
+            getRiver(move.getOption().source, move.getOption().target).ifPresent(undo::save);
+        } else if (move.getSplurge() != null) {
+            List<Integer> route = move.getSplurge().route;
+            for (int i = 1; i < route.size(); i++) {
+                getRiver(route.get(i-1), route.get(i)).ifPresent(undo::save);
+            }
+        }
+        tentative = true;
+        try {
+            boolean changed = apply(move);
+            tentativeMoves.push(undo);
+            return changed;
+        } catch (RuntimeException e) {
+            restore(undo);
+            throw e;
+        } finally {
+            tentative = false;
+        }
+    }
+
+    /**
+     * Take back the most recent tentative move. The unions it made in the
+     * components of its punter are undone; the score cache of its punter
+     * is rebuilt on the next query.
+     */
+    @Override
+    public void undoMove() {
+        if (tentativeMoves.isEmpty()) {
+            throw new LogicException("no tentative move to undo");
+        }
+        restore(tentativeMoves.pop());
+    }
+
+    @Override
+    @Transient
+    public int getNumTentativeMoves() {
+        return tentativeMoves.size();
+    }
+
+    @Override
+    @Transient
+    public long getVersion() {
+        return events.getVersion();
+    }
+
+    @Override
+    public void addListener(GameStateListener listener) {
+        events.add(listener);
+    }
+
+    @Override
+    public void removeListener(GameStateListener listener) {
+        events.remove(listener);
+    }
+
+    private void restore(Undo undo) {
+        for (int i = undo.rivers.size() - 1; i >= 0; i--) {
+            River river = undo.rivers.get(i);
+            int[] saved = undo.ownerAndOption.get(i);
+            int owner = river.getOwner();
+            int option = river.getOption();
+            count(river, -1);
+            river.setOwner(saved[0]);
+            river.setOption(saved[1]);
+            count(river, 1);
+            if (option != saved[1]) {
+                events.released(option, indexOf(river));
+            }
+            if (owner != saved[0]) {
+                events.released(owner, indexOf(river));
+            }
+        }
+        optionsUsed = undo.optionsUsed;
+        if (undo.credits == null) {
+            credits.remove(undo.punter);
+        } else {
+            credits.put(undo.punter, undo.credits);
+        }
+        UnionFind components = getBuiltComponents(undo.punter);
+        if (components != null && components == undo.components) {
+            while (components.getNumUndoable() > undo.numUnions) {
+                components.undo();
+            }
+        } else if (components != null) {
+            // built after the move, so it includes the move's rivers
+            componentsByPunter[undo.punter] = null;
+        }
+        invalidateCaches(undo.punter);
+    }
+
+    private boolean apply(Move move) {
         Move.ClaimData claim = move.getClaim();
         if (claim != null) {
             River river = getRiver(claim.source, claim.target).get();
             if (river.isClaimed()) {
                 throw new LogicException("river " + river + " claimed by " + claim.punter + " but already owned by " + river.getOwner());
             }
+            count(river, -1);
             river.setOwner(claim.punter);
+            count(river, 1);
+            addToComponents(claim.punter, river);
             invalidateCaches(claim.punter);
+            events.claimed(claim.punter, indexOf(river), false);
             return true;
         }
         Move.SplurgeData splurge = move.getSplurge();
@@ -237,15 +616,24 @@ class MapBasedGameState implements GameState {
             int n = splurge.route.size();
             for (int i = 1; i < n; i++) {
                 River river = getRiver(splurge.route.get(i-1), splurge.route.get(i)).get();
-                if (!river.isClaimed()) {
+                boolean claimed = !river.isClaimed();
+                if (claimed) {
+                    count(river, -1);
                     river.setOwner(punter);
+                    count(river, 1);
                 } else if (!takeOption(river, punter)) {
                     throw new LogicException("river " + river + " not eligible for splurge");
                 }
+                addToComponents(punter, river);
+                invalidateCaches(punter);
+                if (claimed) {
+                    events.claimed(punter, indexOf(river), true);
+                } else {
+                    events.optioned(punter, indexOf(river), true);
+                }
                 cred--;
             }
             credits.put(punter, cred);
-            invalidateCaches(punter);
             return true;
         }
         Move.ClaimData option = move.getOption();
@@ -257,7 +645,9 @@ class MapBasedGameState implements GameState {
             if (!takeOption(river, option.punter)) {
                 throw new LogicException("river " + river + " not eligible for option");
             }
+            addToComponents(option.punter, river);
             invalidateCaches(option.punter);
+            events.optioned(option.punter, indexOf(river), false);
             return true;
         }
         Move.PassData pass = move.getPass();
@@ -273,7 +663,9 @@ class MapBasedGameState implements GameState {
 
     private boolean takeOption(River river, int punter) {
         if (river.canOption(punter)) {
+            count(river, -1);
             river.setOption(punter);
+            count(river, 1);
             if (punter == myPunterId) optionsUsed++;
             return true;
         }
@@ -285,15 +677,15 @@ class MapBasedGameState implements GameState {
      */
     @Override
     public boolean canReach(int punter, int site1, int site2) {
-        GraphMap punterMap = getGraphMap(punter);
-        return punterMap.hasRoute(site1, site2);
+        if (site1 == site2) {
+            return true;
+        }
+        return isSite(site1) && isSite(site2) && getComponents(punter).connected(site1, site2);
     }
 
     @Override
     public boolean canReachMine(int punter, int site) {
-        GraphMap punterMap = getGraphMap(punter);
-        return getMines().stream()
-                .anyMatch(mine -> punterMap.hasRoute(site, mine));
+        return isSite(site) && getComponents(punter).marks(site) > 0;
     }
 
     @Override
@@ -306,8 +698,8 @@ class MapBasedGameState implements GameState {
         int score = 0;
         for (int mine : getMines()) {
             if (map.containsSite(mine)) {
-                ArrayNatMap<Integer> reach = map.getAllShortestRouteLengths(mine);
-                ArrayNatMap<Integer> dists = getGraphMap().getAllShortestRouteLengths(mine);
+                IntNatMap reach = map.getAllShortestRouteLengths(mine);
+                IntNatMap dists = getMineDistances().get(mine);
                 for (int site : getSites()) {
                     if (site != mine && reach.containsKey(site)) {
                         int shortest = dists.get(site);
@@ -321,6 +713,16 @@ class MapBasedGameState implements GameState {
 
     @Override
     public int getShortestRouteLength(int site1, int site2) {
+        IntNatMap dists = getMineDistances().get(site1);
+        if (dists != null) {
+            int dist = dists.get(site2);
+            return (dist == IntNatMap.ABSENT) ? -1 : dist;
+        }
+        dists = getMineDistances().get(site2);
+        if (dists != null) {
+            int dist = dists.get(site1);
+            return (dist == IntNatMap.ABSENT) ? -1 : dist;
+        }
         return getGraphMap().getShortestRouteLength(site1, site2);
     }
 
@@ -331,21 +733,58 @@ class MapBasedGameState implements GameState {
 
     @Override
     public List<River> getShortestOpenRoute(int punterId, int site1, int site2) {
-        if (settings != null && settings.isOptions() && this.getRemainingOptions() > 0) {
-            List<River> rivers = getRivers().stream()
-                    .filter(r -> r.canUse(punterId) || !r.isClaimed() || r.canOption(punterId))
-                    .collect(Collectors.toList());
-            GraphMap punterMap = new GraphMap(getSites(), rivers);
-            List<River> path = punterMap.getShortestRoute(site1, site2);
-            if (path.stream().filter(river -> river.isClaimed() && river.canOption(punterId)).count() <= this.getRemainingOptions()) {
-                return path;
+        int budget = getSettings().isOptions() ? Math.max(0, getRemainingOptions()) : 0;
+        if (budget == 0) {
+            return getGraphMap().getShortestRoute(site1, site2, r -> r.canUse(punterId) || !r.isClaimed());
+        }
+        return getGraphMap().getCheapestRoute(site1, site2, openCost(punterId, 1), budget);
+    }
+
+    @Override
+    public List<River> getCheapestOpenRoute(int punterId, int site1, int site2) {
+        int budget = getSettings().isOptions() ? Math.max(0, getRemainingOptions()) : 0;
+        return getGraphMap().getCheapestRoute(site1, site2, openCost(punterId, 0), budget);
+    }
+
+    @Transient
+    @Override
+    public MineRoutes getMineRoutes() {
+        if (mineRoutes != null && mineRoutesVersion == events.getVersion()) {
+            return mineRoutes;
+        }
+        int budget = getSettings().isOptions() ? Math.max(0, getRemainingOptions()) : 0;
+        int[] mines = getMines().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int n = mines.length;
+        List<List<River>> routes = new ArrayList<>(Collections.nCopies(n * n, null));
+        int[] missingSteps = new int[n * n];
+        for (int i = 0; i < n; i++) {
+            List<List<River>> fromMine = getGraphMap().getCheapestRoutes(mines[i], mines, openCost(myPunterId, 0), budget);
+            for (int j = 0; j < n; j++) {
+                if (i == j) continue;
+                List<River> route = fromMine.get(j);
+                if (route == null) {
+                    missingSteps[i * n + j] = -1;
+                } else {
+                    routes.set(i * n + j, route);
+                    missingSteps[i * n + j] = (int) route.stream().filter(r -> !r.canUse(myPunterId)).count();
+                }
             }
         }
-        List<River> rivers = getRivers().stream()
-                .filter(r -> r.canUse(punterId) || !r.isClaimed())
-                .collect(Collectors.toList());
-        GraphMap punterMap = new GraphMap(getSites(), rivers);
-        return punterMap.getShortestRoute(site1, site2);
+        mineRoutes = new MineRoutes(myPunterId, mines, routes, missingSteps);
+        mineRoutesVersion = events.getVersion();
+        return mineRoutes;
+    }
+
+    /**
+     * Cost of a river in an open route search for the punter, see
+     * {@link GraphMap#getCheapestRoute}: rivers the punter can use cost
+     * ownCost, unclaimed rivers cost 1, and rivers the punter could option
+     * cost 1 and use up one option.
+     */
+    private static ToIntFunction<River> openCost(int punterId, int ownCost) {
+        return r -> r.canUse(punterId) ? ownCost
+                : !r.isClaimed() ? 1
+                : r.canOption(punterId) ? 1 + Bfs.USES_BUDGET : -1;
     }
 
     @Override
@@ -355,7 +794,7 @@ class MapBasedGameState implements GameState {
         if (score < 0) {
             score = getScore(myPunterId);
         }
-        Set<River> rivers = getRiversByOwner(myPunterId);
+        Set<River> rivers = new HashSet<>(getRiversByOwner(myPunterId));
         rivers.add(river);
         GraphMap newMap = new GraphMap(getSites(), rivers);
         int newScore = getScore(newMap);
@@ -369,7 +808,7 @@ class MapBasedGameState implements GameState {
         if (score < 0) {
             score = getScore(myPunterId);
         }
-        Set<River> rivers = getRiversByOwner(myPunterId);
+        Set<River> rivers = new HashSet<>(getRiversByOwner(myPunterId));
         rivers.add(river1);
         rivers.add(river2);
         GraphMap newMap = new GraphMap(getSites(), rivers);
@@ -397,23 +836,6 @@ class MapBasedGameState implements GameState {
         return canReach(myPunterId, future.getSource(), future.getTarget());
     }
 
-    @Override
-    public int missingStepsForFuture(Future future) {
-        List<River> path = getShortestOpenRoute(myPunterId, future.getSource(), future.getTarget());
-        if (path.isEmpty()) return -1;
-        return (int) path.stream().filter(river -> !river.isClaimed()
-                || (areOptionsActive() && river.canOption(myPunterId))).count();
-    }
-
-    @Override
-    public River nextStepForFuture(Future future) {
-        List<River> path = getShortestOpenRoute(myPunterId, future.getSource(), future.getTarget());
-        for (River river : path) {
-            if (!river.isClaimed() || (areOptionsActive() && river.canOption(myPunterId))) return river;
-        }
-        return null;
-    }
-
     /**
      * Ist this site the source or target of any river usable by the punter?
      */
@@ -428,6 +850,16 @@ class MapBasedGameState implements GameState {
         return credits.get(punterId);
     }
 
+    @Override
+    public SiteMapping getSiteMapping() {
+        return siteMapping;
+    }
+
+    @Override
+    public void setSiteMapping(SiteMapping siteMapping) {
+        this.siteMapping = siteMapping;
+    }
+
     public Set<River> getRivers() {
         return rivers;
     }
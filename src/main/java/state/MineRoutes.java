@@ -0,0 +1,65 @@
+package state;
+
+import io.River;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cheapest open routes for me between all pairs of mines,
+ * as given by {@link GameState#getCheapestOpenRoute}.
+ * Mines are numbered 0..size()-1.
+ */
+public class MineRoutes {
+
+    private final int myPunterId;
+    private final int[] mines;
+    /** Route from mine i to mine j at i * size() + j, null if there is none. */
+    private final List<List<River>> routes;
+    private final int[] missingSteps;
+
+    /**
+     * @param routes route from mine i to mine j at i * mines.length + j, null if there is none
+     * @param missingSteps number of rivers I do not have yet on each route, -1 if there is none
+     */
+    MineRoutes(int myPunterId, int[] mines, List<List<River>> routes, int[] missingSteps) {
+        this.myPunterId = myPunterId;
+        this.mines = mines;
+        this.routes = routes;
+        this.missingSteps = missingSteps;
+    }
+
+    public int size() {
+        return mines.length;
+    }
+
+    /** Site ID of mine i. */
+    public int getMine(int i) {
+        return mines[i];
+    }
+
+    /**
+     * Number of rivers I still need to connect mine i to mine j,
+     * 0 if they are connected, -1 if they cannot be connected.
+     */
+    public int getMissingSteps(int i, int j) {
+        return (i == j) ? 0 : missingSteps[i * mines.length + j];
+    }
+
+    /** Route from mine i to mine j, or the empty list if there is none. */
+    public List<River> getRoute(int i, int j) {
+        List<River> route = routes.get(i * mines.length + j);
+        return (route == null) ? Collections.emptyList() : route;
+    }
+
+    /** First river I still need on the route from mine i to mine j, or null. */
+    public River getNextStep(int i, int j) {
+        for (River river : getRoute(i, j)) {
+            if (!river.canUse(myPunterId)) {
+                return river;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,52 @@
+package state;
+
+import io.River;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A cheapest open route for me, as given by {@link GameState#getCheapestOpenRoute},
+ * with the number of rivers on it I do not have yet and the first of them.
+ */
+public class OpenRoute {
+
+    private final List<River> rivers;
+    private final int missingSteps;
+    private final River nextStep;
+
+    /**
+     * @param rivers the route in order from its start, empty if there is none
+     */
+    OpenRoute(int myPunterId, List<River> rivers) {
+        this.rivers = rivers;
+        int missing = 0;
+        River next = null;
+        for (River river : rivers) {
+            if (!river.canUse(myPunterId)) {
+                if (next == null) {
+                    next = river;
+                }
+                missing++;
+            }
+        }
+        this.missingSteps = rivers.isEmpty() ? -1 : missing;
+        this.nextStep = next;
+    }
+
+    /** The rivers of the route in order from its start, or the empty list if there is none. */
+    public List<River> getRivers() {
+        return Collections.unmodifiableList(rivers);
+    }
+
+    /** Number of rivers I still need on the route, -1 if there is no route. */
+    public int getMissingSteps() {
+        return missingSteps;
+    }
+
+    /** First river I still need on the route, or null. */
+    public River getNextStep() {
+        return nextStep;
+    }
+
+}
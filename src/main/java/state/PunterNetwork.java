@@ -0,0 +1,222 @@
+package state;
+
+import java.util.Arrays;
+
+/**
+ * The sites connected by the rivers of one punter, and the score they are worth.
+ *
+ * The sites are kept in a {@link UnionFind} over site indices 0..n-1, with
+ * the mines marked. Every component with more than one site keeps, for each
+ * mine, the sum of the squared distances from that mine to the sites in the
+ * component. Joining two components A and B gains the sums of B for the
+ * mines in A plus the sums of A for the mines in B, so the score can be kept
+ * up to date in O(number of mines) per river.
+ *
+ * Joins made with {@link #addUndoable} can be taken back in reverse order,
+ * with the undo rules of {@link UnionFind#unionUndoable}.
+ */
+class PunterNetwork {
+
+    private final int[] mines;
+    /** Distance from each mine to each site index, -1 if unreachable. */
+    private final int[][] mineDistances;
+
+    private final UnionFind components;
+    /** Per component root: squared distance sum per mine, null for single sites. */
+    private final int[][] sums;
+
+    private int score = 0;
+
+    /** Undoable joins: triples of kept root, absorbed root and score before the join. */
+    private int[] undoLog = new int[48];
+    private int undoSize = 0;
+
+    /**
+     * @param mines site indices of the mines
+     * @param mineDistances distance from each mine to each site index, -1 if unreachable
+     */
+    PunterNetwork(int numSites, int[] mines, int[][] mineDistances) {
+        this.mines = mines;
+        this.mineDistances = mineDistances;
+        components = new UnionFind(numSites);
+        for (int mine : mines) {
+            components.mark(mine);
+        }
+        sums = new int[numSites][];
+    }
+
+    int getScore() {
+        return score;
+    }
+
+    boolean connected(int site1, int site2) {
+        return components.connected(site1, site2);
+    }
+
+    boolean reachesMine(int site) {
+        return components.marks(site) > 0;
+    }
+
+    /**
+     * Add a river between the given sites to the network.
+     * @return {@code true} if this connected two components
+     */
+    boolean add(int site1, int site2) {
+        int a = components.find(site1);
+        int b = components.find(site2);
+        if (a == b) {
+            return false;
+        }
+        int gain = joinGain(a, b);
+        components.union(a, b);
+        merge(a, b, gain);
+        return true;
+    }
+
+    /**
+     * Add a river between the given sites so that it can be taken back with {@link #undo()}.
+     * @return {@code true} if this connected two components; only then is there anything to undo
+     */
+    boolean addUndoable(int site1, int site2) {
+        int a = components.find(site1);
+        int b = components.find(site2);
+        if (a == b) {
+            return false;
+        }
+        int before = score;
+        int gain = joinGain(a, b);
+        components.unionUndoable(a, b);
+        int kept = merge(a, b, gain);
+        if (undoSize + 3 > undoLog.length) {
+            undoLog = Arrays.copyOf(undoLog, 2 * undoLog.length);
+        }
+        undoLog[undoSize++] = kept;
+        undoLog[undoSize++] = (kept == a) ? b : a;
+        undoLog[undoSize++] = before;
+        return true;
+    }
+
+    /**
+     * Undo the most recent join made with {@link #addUndoable}.
+     */
+    void undo() {
+        if (undoSize == 0) {
+            throw new LogicException("nothing to undo");
+        }
+        score = undoLog[--undoSize];
+        int b = undoLog[--undoSize];
+        int a = undoLog[--undoSize];
+        components.undo();
+        int[] sumsA = sums[a];
+        for (int k = 0; k < mines.length; k++) {
+            sumsA[k] -= sum(b, k);
+        }
+    }
+
+    /**
+     * Add the sums of the component absorbed by the union of the roots a and b
+     * to the one that was kept.
+     * @return the root that was kept
+     */
+    private int merge(int a, int b, int gain) {
+        score += gain;
+        if (components.find(a) != a) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int[] sumsA = sums[a];
+        if (sumsA == null) {
+            sumsA = new int[mines.length];
+            for (int k = 0; k < mines.length; k++) {
+                sumsA[k] = squaredDistance(k, a);
+            }
+            sums[a] = sumsA;
+        }
+        for (int k = 0; k < mines.length; k++) {
+            sumsA[k] += sum(b, k);
+        }
+        return a;
+    }
+
+    /**
+     * Score that adding a river between the given sites would gain.
+     */
+    int gain(int site1, int site2) {
+        int a = components.find(site1);
+        int b = components.find(site2);
+        return (a == b) ? 0 : joinGain(a, b);
+    }
+
+    /**
+     * Score that adding two rivers, between site1 and site2 and between
+     * site3 and site4, would gain.
+     */
+    int gain(int site1, int site2, int site3, int site4) {
+        int r1 = components.find(site1);
+        int r2 = components.find(site2);
+        int r3 = components.find(site3);
+        int r4 = components.find(site4);
+        if (r1 == r2) {
+            return (r3 == r4) ? 0 : joinGain(r3, r4);
+        }
+        if (r3 == r4) {
+            return joinGain(r1, r2);
+        }
+        if (r3 != r1 && r3 != r2 && r4 != r1 && r4 != r2) {
+            // two separate joins
+            return joinGain(r1, r2) + joinGain(r3, r4);
+        }
+        // the second river joins a third component (or none) to the first two
+        int r5 = (r3 == r1 || r3 == r2) ? r4 : r3;
+        if (r5 == r1 || r5 == r2) {
+            return joinGain(r1, r2);
+        }
+        if (components.marks(r1) == 0 && components.marks(r2) == 0 && components.marks(r5) == 0) {
+            return 0;
+        }
+        int gain = 0;
+        for (int k = 0; k < mines.length; k++) {
+            int root = components.find(mines[k]);
+            if (root == r1) {
+                gain += sum(r2, k) + sum(r5, k);
+            } else if (root == r2) {
+                gain += sum(r1, k) + sum(r5, k);
+            } else if (root == r5) {
+                gain += sum(r1, k) + sum(r2, k);
+            }
+        }
+        return gain;
+    }
+
+    /**
+     * Score gained by joining the components with the given roots.
+     */
+    private int joinGain(int a, int b) {
+        if (components.marks(a) == 0 && components.marks(b) == 0) {
+            return 0;
+        }
+        int gain = 0;
+        for (int k = 0; k < mines.length; k++) {
+            int root = components.find(mines[k]);
+            if (root == a) {
+                gain += sum(b, k);
+            } else if (root == b) {
+                gain += sum(a, k);
+            }
+        }
+        return gain;
+    }
+
+    /** Sum of squared distances from mine k to the sites in the component with the given root. */
+    private int sum(int root, int k) {
+        int[] s = sums[root];
+        return (s == null) ? squaredDistance(k, root) : s[k];
+    }
+
+    private int squaredDistance(int k, int site) {
+        int d = mineDistances[k][site];
+        return (d > 0) ? d * d : 0;
+    }
+
+}
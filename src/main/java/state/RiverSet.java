@@ -0,0 +1,72 @@
+package state;
+
+import io.River;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-only view of the rivers whose indices are set in a bit set.
+ * Later changes to the bit set show through the view, so the state must
+ * not be changed while iterating.
+ */
+class RiverSet extends AbstractSet<River> {
+
+    private final River[] rivers;
+    private final BitSet members;
+    private final ToIntFunction<River> indexOf;
+
+    /**
+     * @param indexOf index of a river in rivers, or -1 if it has none
+     */
+    RiverSet(River[] rivers, BitSet members, ToIntFunction<River> indexOf) {
+        this.rivers = rivers;
+        this.members = members;
+        this.indexOf = indexOf;
+    }
+
+    @Override
+    public int size() {
+        return members.cardinality();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof River)) {
+            return false;
+        }
+        int i = indexOf.applyAsInt((River) o);
+        return i >= 0 && members.get(i);
+    }
+
+    @Override
+    public Iterator<River> iterator() {
+        return new Iterator<River>() {
+            private int next = members.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public River next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                River river = rivers[next];
+                next = members.nextSetBit(next + 1);
+                return river;
+            }
+        };
+    }
+
+}
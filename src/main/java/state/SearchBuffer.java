@@ -0,0 +1,94 @@
+package state;
+
+import java.util.Arrays;
+
+/**
+ * Scratch space for one breadth-first search over the vertices 0..n-1,
+ * meant to be reused across searches.
+ *
+ * A vertex counts as visited only if its stamp equals the current
+ * generation, so {@link #clear()} is O(1) and searches allocate nothing.
+ * Every vertex is queued at most once per search, so the queue is a plain
+ * array of size n. Searches that may queue a vertex more than once use
+ * {@link #update} and a queue of their own.
+ */
+class SearchBuffer {
+
+    private final int[] stamp;
+    private final int[] dist;
+    private final int[] via;
+    private final int[] queue;
+    private int generation = 0;
+    private int head = 0;
+    private int tail = 0;
+
+    SearchBuffer(int n) {
+        stamp = new int[n];
+        dist = new int[n];
+        via = new int[n];
+        queue = new int[n];
+    }
+
+    int capacity() {
+        return stamp.length;
+    }
+
+    /** Forget all visited vertices and empty the queue. */
+    void clear() {
+        generation++;
+        if (generation == 0) {
+            // wrapped around: old stamps could look current
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        head = 0;
+        tail = 0;
+    }
+
+    boolean isVisited(int vertex) {
+        return stamp[vertex] == generation;
+    }
+
+    /**
+     * Mark a vertex as visited at the given distance, reached over the given edge, and queue it.
+     */
+    void visit(int vertex, int distance, int edge) {
+        stamp[vertex] = generation;
+        dist[vertex] = distance;
+        via[vertex] = edge;
+        queue[tail++] = vertex;
+    }
+
+    /**
+     * Set the distance of a vertex and the edge over which it was reached,
+     * without queueing it. For searches that keep their own queue.
+     */
+    void update(int vertex, int distance, int edge) {
+        stamp[vertex] = generation;
+        dist[vertex] = distance;
+        via[vertex] = edge;
+    }
+
+    /** Distance of a vertex, or -1 if it has not been visited. */
+    int distance(int vertex) {
+        return isVisited(vertex) ? dist[vertex] : -1;
+    }
+
+    /** The edge over which a visited vertex was reached, -1 for the start. */
+    int via(int vertex) {
+        return via[vertex];
+    }
+
+    boolean isQueueEmpty() {
+        return head == tail;
+    }
+
+    int queueSize() {
+        return tail - head;
+    }
+
+    int poll() {
+        return queue[head++];
+    }
+
+}
@@ -0,0 +1,48 @@
+package state;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The listeners and version of a game state. Every river change
+ * increments the version and is passed on to the listeners.
+ */
+class StateEvents {
+
+    private final List<GameStateListener> listeners = new ArrayList<>();
+    private long version = 0;
+
+    void add(GameStateListener listener) {
+        listeners.add(listener);
+    }
+
+    void remove(GameStateListener listener) {
+        listeners.remove(listener);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    void claimed(int punter, int river, boolean splurge) {
+        version++;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).riverClaimed(punter, river, splurge);
+        }
+    }
+
+    void optioned(int punter, int river, boolean splurge) {
+        version++;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).riverOptioned(punter, river, splurge);
+        }
+    }
+
+    void released(int punter, int river) {
+        version++;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).riverReleased(punter, river);
+        }
+    }
+
+}
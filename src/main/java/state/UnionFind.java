@@ -0,0 +1,146 @@
+package state;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint sets over the ints 0..n-1, with union by size and path halving.
+ *
+ * Elements can be marked; each set knows how many marked elements it contains.
+ *
+ * Unions made with {@link #unionUndoable} can be taken back in reverse order.
+ * While any of them are outstanding, paths are not compressed, so that
+ * undoing a union only has to unlink the absorbed root.
+ */
+public class UnionFind {
+
+    private final int[] parent;
+    private final int[] size;
+    private final int[] marks;
+
+    /** Roots absorbed by undoable unions, in order. */
+    private int[] undoLog = new int[16];
+    private int undoSize = 0;
+
+    public UnionFind(int n) {
+        parent = new int[n];
+        size = new int[n];
+        marks = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    /**
+     * A copy of the sets and marks, with the same undoable unions outstanding.
+     */
+    public UnionFind(UnionFind other) {
+        parent = other.parent.clone();
+        size = other.size.clone();
+        marks = other.marks.clone();
+        undoLog = other.undoLog.clone();
+        undoSize = other.undoSize;
+    }
+
+    /**
+     * Mark an element. Must be called before any union involving the element.
+     */
+    public void mark(int x) {
+        marks[x]++;
+    }
+
+    public int find(int x) {
+        if (undoSize > 0) {
+            while (parent[x] != x) {
+                x = parent[x];
+            }
+            return x;
+        }
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Merge the sets containing a and b.
+     * @return {@code true} if a and b were in different sets
+     */
+    public boolean union(int a, int b) {
+        if (undoSize > 0) {
+            throw new LogicException("cannot union while undoable unions are outstanding");
+        }
+        return join(a, b) >= 0;
+    }
+
+    /**
+     * Merge the sets containing a and b so that it can be taken back with {@link #undo()}.
+     * @return {@code true} if a and b were in different sets; only then is there anything to undo
+     */
+    public boolean unionUndoable(int a, int b) {
+        int absorbed = join(a, b);
+        if (absorbed < 0) {
+            return false;
+        }
+        if (undoSize == undoLog.length) {
+            undoLog = Arrays.copyOf(undoLog, 2 * undoLog.length);
+        }
+        undoLog[undoSize++] = absorbed;
+        return true;
+    }
+
+    /** Number of undoable unions outstanding. */
+    public int getNumUndoable() {
+        return undoSize;
+    }
+
+    /**
+     * Undo the most recent union made with {@link #unionUndoable}.
+     */
+    public void undo() {
+        if (undoSize == 0) {
+            throw new LogicException("nothing to undo");
+        }
+        int rb = undoLog[--undoSize];
+        int ra = parent[rb];
+        parent[rb] = rb;
+        size[ra] -= size[rb];
+        marks[ra] -= marks[rb];
+    }
+
+    /**
+     * @return the root that was absorbed, or -1 if a and b were in the same set
+     */
+    private int join(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return -1;
+        }
+        if (size[ra] < size[rb]) {
+            int t = ra;
+            ra = rb;
+            rb = t;
+        }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+        marks[ra] += marks[rb];
+        return rb;
+    }
+
+    public boolean connected(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    /** Number of elements in the set containing x. */
+    public int size(int x) {
+        return size[find(x)];
+    }
+
+    /** Number of marked elements in the set containing x. */
+    public int marks(int x) {
+        return marks[find(x)];
+    }
+
+}
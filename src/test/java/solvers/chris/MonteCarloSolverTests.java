@@ -0,0 +1,43 @@
+package solvers.chris;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MonteCarloSolverTests {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void valueWithoutSamples() {
+        MonteCarloSolver.Counters counters = new MonteCarloSolver.Counters(1);
+        Assert.assertEquals(0, counters.value(0), EPSILON);
+    }
+
+    @Test
+    public void valueAmafOnly() {
+        MonteCarloSolver.Counters counters = new MonteCarloSolver.Counters(1);
+        counters.numAmafSamples[0] = 4;
+        counters.amafScore[0] = 10;
+        Assert.assertEquals(2.5, counters.value(0), EPSILON);
+    }
+
+    @Test
+    public void valueDirectOnly() {
+        MonteCarloSolver.Counters counters = new MonteCarloSolver.Counters(1);
+        counters.numSamples[0] = 4;
+        counters.score[0] = 6;
+        Assert.assertEquals(1.5, counters.value(0), EPSILON);
+    }
+
+    @Test
+    public void valueAtEquivalence() {
+        int k = (int) MonteCarloSolver.RAVE_EQUIVALENCE;
+        MonteCarloSolver.Counters counters = new MonteCarloSolver.Counters(1);
+        counters.numSamples[0] = k;
+        counters.score[0] = 2L * k;
+        counters.numAmafSamples[0] = 2 * k;
+        counters.amafScore[0] = 8L * k;
+        // the direct mean 2 and the AMAF mean 4 get half the weight each
+        Assert.assertEquals(3, counters.value(0), EPSILON);
+    }
+}
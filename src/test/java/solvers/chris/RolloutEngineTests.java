@@ -0,0 +1,81 @@
+package solvers.chris;
+
+import io.Move;
+import io.Setup;
+import org.junit.Assert;
+import org.junit.Test;
+import state.GameState;
+import state.GameStateFactory;
+import state.TestMaps;
+
+import java.util.*;
+
+public class RolloutEngineTests {
+
+    private static GameState createState(GameStateFactory.Implementation implementation) {
+        Setup.Request setup = TestMaps.setup(TestMaps.diamondWithTail(0, 40), 1, 2, false);
+        return new GameStateFactory(implementation).create(setup);
+    }
+
+    @Test
+    public void scoresMatchState() {
+        for (GameStateFactory.Implementation implementation : GameStateFactory.Implementation.values()) {
+            for (int seed = 0; seed < 20; seed++) {
+                GameState state = createState(implementation);
+                RolloutEngine engine = new RolloutEngine(state);
+                int[] scores = new int[state.getNumPunters()];
+                engine.play(seed % engine.getNumUnclaimed(), 1, 1 + seed % 5, new SplittableRandom(seed), scores);
+
+                int punter = 1;
+                for (int i = 0; i < engine.getNumClaimed(); i++) {
+                    state.applyMove(Move.claim(punter, state.getRiverByIndex(engine.getClaimedRiver(i))));
+                    punter = (punter + 1) % state.getNumPunters();
+                }
+                for (int p = 0; p < state.getNumPunters(); p++) {
+                    Assert.assertEquals(implementation + " seed " + seed, state.getScore(p), scores[p]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void playoutsStartFromState() {
+        GameState state = createState(GameStateFactory.Implementation.COMPACT);
+        RolloutEngine engine = new RolloutEngine(state);
+        int[] scores = new int[state.getNumPunters()];
+        SplittableRandom rng = new SplittableRandom(1);
+        for (int i = 0; i < 10; i++) {
+            engine.play(0, 0, 1, rng, scores);
+            Assert.assertEquals(state.getRiverByIndex(engine.getUnclaimedRiver(0)), state.getRiverByIndex(engine.getClaimedRiver(0)));
+            Assert.assertEquals(state.getScore(1), scores[1]);
+        }
+    }
+
+    @Test
+    public void openRiversAreUniform() {
+        GameState state = createState(GameStateFactory.Implementation.COMPACT);
+        RolloutEngine engine = new RolloutEngine(state);
+        int taken = engine.getUnclaimedRiver(1);
+        engine.begin();
+        Assert.assertTrue(engine.claim(0, taken));
+        Assert.assertFalse(engine.claim(1, taken));
+        Assert.assertFalse(engine.claim(1, 0));
+
+        int[] counts = new int[state.getNumRivers()];
+        SplittableRandom rng = new SplittableRandom(1);
+        int draws = 4000;
+        for (int i = 0; i < draws; i++) {
+            counts[engine.randomOpenRiver(rng)]++;
+        }
+        int numOpen = engine.getNumUnclaimed() - 1;
+        for (int i = 0; i < engine.getNumUnclaimed(); i++) {
+            int river = engine.getUnclaimedRiver(i);
+            if (river == taken) {
+                Assert.assertEquals(0, counts[river]);
+            } else {
+                Assert.assertEquals(draws / numOpen, counts[river], draws / numOpen / 5);
+            }
+        }
+        engine.finish(1, 0, rng, new int[state.getNumPunters()]);
+    }
+}
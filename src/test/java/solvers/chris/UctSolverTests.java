@@ -0,0 +1,94 @@
+package solvers.chris;
+
+import io.Move;
+import io.River;
+import io.Setup;
+import org.junit.Assert;
+import org.junit.Test;
+import state.GameState;
+import state.GameStateFactory;
+import state.TestMaps;
+
+public class UctSolverTests {
+
+    private static GameState createState() {
+        Setup.Request setup = TestMaps.setup(TestMaps.diamondWithTail(0, 40), 1, 2, true);
+        return new GameStateFactory(GameStateFactory.Implementation.COMPACT).create(setup);
+    }
+
+    /**
+     * A child of the root that has children itself, after a search. The
+     * search is repeated on the kept tree if it did not get that deep.
+     */
+    private static UctSolver.Node searchedChild(UctSolver solver, GameState state) {
+        for (int attempt = 0; attempt < 5; attempt++) {
+            solver.getNextMove(state);
+            for (UctSolver.Node child : solver.getTree().getChildren()) {
+                if (child.getChildren().length > 0) {
+                    return child;
+                }
+            }
+        }
+        throw new AssertionError("no grandchildren after search");
+    }
+
+    @Test
+    public void addChild() {
+        UctSolver.Node node = new UctSolver.Node(-1, 0);
+        UctSolver.Node child = node.addChild(3, 1);
+        Assert.assertNotNull(child);
+        Assert.assertNull(node.addChild(3, 1));
+        Assert.assertSame(child, node.getChild(3));
+        Assert.assertNull(node.getChild(4));
+        Assert.assertEquals(1, node.getChildren().length);
+    }
+
+    @Test
+    public void select() {
+        UctSolver.Node node = new UctSolver.Node(-1, 0);
+        UctSolver.Node a = node.addChild(1, 1);
+        UctSolver.Node b = node.addChild(2, 1);
+        node.visits.set(10);
+        a.visits.set(10);
+        a.reward.set(5 * UctSolver.REWARD_SCALE);
+        Assert.assertSame(b, UctSolver.select(node));
+        b.visits.set(10);
+        b.reward.set(9 * UctSolver.REWARD_SCALE);
+        Assert.assertSame(b, UctSolver.select(node));
+    }
+
+    @Test
+    public void reuseTreeFollowsClaims() {
+        GameState state = createState();
+        UctSolver solver = new UctSolver(100_000_000L, 1);
+        UctSolver.Node mine = searchedChild(solver, state);
+        UctSolver.Node theirs = mine.getChildren()[0];
+        state.applyMove(Move.claim(1, state.getRiverByIndex(mine.river)));
+        state.applyMove(Move.claim(0, state.getRiverByIndex(theirs.river)));
+        Assert.assertSame(theirs, solver.reuseTree(state));
+    }
+
+    @Test
+    public void reuseTreeAfterPass() {
+        GameState state = createState();
+        UctSolver solver = new UctSolver(100_000_000L, 1);
+        UctSolver.Node mine = searchedChild(solver, state);
+        state.applyMove(Move.claim(1, state.getRiverByIndex(mine.river)));
+        state.applyMove(Move.pass(0));
+        UctSolver.Node root = solver.reuseTree(state);
+        Assert.assertEquals(-1, root.river);
+        Assert.assertEquals(0, root.visits.get());
+    }
+
+    @Test
+    public void reuseTreeAfterOption() {
+        GameState state = createState();
+        UctSolver solver = new UctSolver(100_000_000L, 1);
+        UctSolver.Node mine = searchedChild(solver, state);
+        state.applyMove(Move.claim(1, state.getRiverByIndex(mine.river)));
+        state.applyMove(Move.option(0, new River(0, 10)));
+        UctSolver.Node root = solver.reuseTree(state);
+        Assert.assertEquals(-1, root.river);
+        Assert.assertEquals(0, root.visits.get());
+    }
+}
@@ -0,0 +1,252 @@
+package state;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.Future;
+import io.Map;
+import io.Move;
+import io.River;
+import io.Setup;
+import io.Site;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class CompactGameStateTests {
+
+    private GameState state;
+
+    @Before
+    public void setup() {
+        Setup.Request setup = TestMaps.setup(TestMaps.diamond(40), 1, 2, false);
+        state = new GameStateFactory(GameStateFactory.Implementation.COMPACT).create(setup);
+    }
+
+    @Test
+    public void shortestRouteLength() {
+        Assert.assertEquals(2, state.getShortestRoute(20,30).size());
+        Assert.assertEquals(1, state.getShortestRoute(0,40).size());
+        Assert.assertTrue(state.getShortestRoute(20, 20).isEmpty());
+    }
+
+    @Test
+    public void canReach() {
+        Assert.assertFalse(state.canReach(1, 20, 30));
+        Assert.assertTrue(state.canReach(1, 10, 40));
+        Assert.assertTrue(state.canReachMine(1, 0));
+        Assert.assertFalse(state.canReachMine(0, 0));
+    }
+
+    @Test
+    public void touching() {
+        Assert.assertEquals(3, state.getDegree(0));
+        Assert.assertEquals(2, state.getUnclaimedRiversTouching(0).size());
+        Assert.assertEquals(1, state.getOwnRiversTouching(0).size());
+        Assert.assertEquals(3, state.getUnclaimedRivers().size());
+    }
+
+    @Test
+    public void score() {
+        Assert.assertEquals(6, state.getScore(1));
+        Assert.assertEquals(0, state.getScore(0));
+    }
+
+    @Test
+    public void potentialPoints() {
+        Assert.assertEquals(1, state.getPotentialPoints(new River(20, 40)));
+        Assert.assertEquals(0, state.getPotentialPoints(new River(0, 40)));
+    }
+
+    @Test
+    public void riverSets() {
+        Set<River> unclaimed = state.getUnclaimedRivers();
+        Assert.assertTrue(unclaimed.contains(new River(40, 20)));
+        Assert.assertEquals(3, state.getRiversByOwner(1).size());
+        state.applyMove(Move.claim(0, new River(20, 40)));
+        Assert.assertFalse(unclaimed.contains(new River(20, 40)));
+        Assert.assertEquals(2, unclaimed.size());
+        Assert.assertEquals(Collections.singleton(new River(20, 40)), state.getRiversByOwner(0));
+        int n = 0;
+        for (int i = state.nextUnclaimedRiver(0); i >= 0; i = state.nextUnclaimedRiver(i + 1)) {
+            Assert.assertTrue(unclaimed.contains(state.getRiverByIndex(i)));
+            n++;
+        }
+        Assert.assertEquals(2, n);
+    }
+
+    @Test
+    public void applyMove() {
+        state.applyMove(Move.claim(0, new River(20, 40)));
+        Assert.assertTrue(state.canReach(0, 20, 40));
+        Assert.assertEquals(1, state.getScore(0));
+        Assert.assertEquals(2, state.getUnclaimedRivers().size());
+    }
+
+    @Test
+    public void undoMove() {
+        state.applyTentativeMove(Move.claim(0, new River(20, 40)));
+        state.applyTentativeMove(Move.claim(0, new River(0, 20)));
+        Assert.assertEquals(2, state.getNumTentativeMoves());
+        Assert.assertEquals(2, state.getScore(0));
+        Assert.assertTrue(state.canReach(0, 0, 40));
+        state.undoMove();
+        Assert.assertEquals(1, state.getScore(0));
+        Assert.assertFalse(state.canReach(0, 0, 40));
+        state.undoMove();
+        Assert.assertEquals(0, state.getNumTentativeMoves());
+        Assert.assertEquals(0, state.getScore(0));
+        Assert.assertEquals(3, state.getUnclaimedRivers().size());
+        Assert.assertEquals(2, state.getUnclaimedDegree(20));
+    }
+
+    @Test
+    public void shortestRouteFromBothEnds() {
+        List<River> rivers = new ArrayList<>(((CompactGameState) state).getRivers());
+        rivers.add(new River(50, 60));
+        Bfs bfs = new Bfs(rivers);
+        int[] sites = {0, 10, 20, 30, 40, 50, 60};
+        for (int a : sites) {
+            int[] lengths = bfs.getShortestPathLengths(a);
+            for (int b : sites) {
+                int[] path = bfs.getShortestPathEdges(a, b);
+                Assert.assertEquals(lengths[b], (path == null) ? -1 : path.length);
+            }
+        }
+        Assert.assertNull(bfs.getShortestPathEdges(0, 60));
+        Assert.assertEquals(2, state.getShortestRouteLength(20, 30));
+    }
+
+    @Test
+    public void repeatedSearchesMatchFreshSearches() {
+        List<River> rivers = new ArrayList<>(((CompactGameState) state).getRivers());
+        IntUnaryOperator cost = e -> (rivers.get(e).getOwner() == 1) ? 0 : (1 | Bfs.USES_BUDGET);
+        Bfs shared = new Bfs(rivers);
+        int[] sites = {0, 10, 20, 30, 40};
+        for (int a : sites) {
+            for (int b : sites) {
+                int budget = (a + b) / 10 % 3;
+                Assert.assertArrayEquals(new Bfs(rivers).getShortestPathEdges(a, b), shared.getShortestPathEdges(a, b));
+                Assert.assertArrayEquals(new Bfs(rivers).getCheapestPathEdges(a, b, cost, budget),
+                        shared.getCheapestPathEdges(a, b, cost, budget));
+            }
+            Assert.assertArrayEquals(new Bfs(rivers).getShortestPathLengths(a), shared.getShortestPathLengths(a));
+        }
+    }
+
+    @Test
+    public void filteredRoute() {
+        Assert.assertEquals(Collections.singletonList(new River(0, 40)), state.getShortestOpenRoute(0, 0, 40));
+        state.applyMove(Move.claim(1, new River(0, 40)));
+        Assert.assertEquals(Arrays.asList(new River(0, 20), new River(20, 40)), state.getShortestOpenRoute(0, 0, 40));
+        Assert.assertTrue(state.getShortestOpenRoute(0, 10, 40).isEmpty());
+    }
+
+    @Test
+    public void cheapestOpenRouteUsesOwnRivers() {
+        Assert.assertEquals(1, state.getShortestOpenRoute(1, 0, 40).size());
+        Assert.assertEquals(Arrays.asList(new River(0, 10), new River(10, 30), new River(30, 40)),
+                state.getCheapestOpenRoute(1, 0, 40));
+    }
+
+    @Test
+    public void openRouteOptionBudget() {
+        Setup.Request setup = TestMaps.setup(TestMaps.diamond(40), 0, 2, true);
+        GameState state = new GameStateFactory(GameStateFactory.Implementation.COMPACT).create(setup);
+
+        Assert.assertEquals(1, state.getRemainingOptions());
+        Assert.assertEquals(Collections.singletonList(new River(10, 30)), state.getCheapestOpenRoute(0, 10, 30));
+        state.applyMove(Move.option(0, new River(30, 40)));
+        Assert.assertEquals(0, state.getRemainingOptions());
+        Assert.assertTrue(state.getCheapestOpenRoute(0, 10, 30).isEmpty());
+        Assert.assertEquals(Arrays.asList(new River(0, 40), new River(30, 40)), state.getCheapestOpenRoute(0, 0, 30));
+    }
+
+    @Test
+    public void futureRoute() {
+        OpenRoute route = state.getFutureRoute(new Future(20, 30));
+        Assert.assertEquals(1, route.getMissingSteps());
+        Assert.assertEquals(route.getRivers().get(0), route.getNextStep());
+        Assert.assertFalse(route.getNextStep().isClaimed());
+        Assert.assertEquals(0, state.getFutureRoute(new Future(0, 40)).getMissingSteps());
+        Assert.assertNull(state.getFutureRoute(new Future(0, 40)).getNextStep());
+    }
+
+    @Test
+    public void mineRoutes() {
+        for (GameStateFactory.Implementation implementation : GameStateFactory.Implementation.values()) {
+            Set<Site> sites = IntStream.range(0, 5).mapToObj(i -> new Site(10 * i)).collect(Collectors.toSet());
+            River owned = new River(0, 40);
+            owned.setOwner(1);
+            Set<River> rivers = new HashSet<>(Arrays.asList(new River(0, 20), new River(20, 40), owned));
+            Setup.Request setup = new Setup.Request();
+            setup.setPunter(1);
+            setup.setPunters(2);
+            setup.setMap(new Map(sites, rivers, new HashSet<>(Arrays.asList(20, 40))));
+            GameState state = new GameStateFactory(implementation).create(setup);
+
+            MineRoutes routes = state.getMineRoutes();
+            Assert.assertSame(routes, state.getMineRoutes());
+            Assert.assertEquals(20, routes.getMine(0));
+            Assert.assertEquals(1, routes.getMissingSteps(0, 1));
+            Assert.assertEquals(new River(20, 40), routes.getNextStep(0, 1));
+
+            state.applyMove(Move.claim(0, new River(20, 40)));
+            routes = state.getMineRoutes();
+            Assert.assertEquals(1, routes.getMissingSteps(1, 0));
+            Assert.assertEquals(2, routes.getRoute(1, 0).size());
+            Assert.assertEquals(new River(0, 20), routes.getNextStep(1, 0));
+
+            state.applyMove(Move.claim(0, new River(0, 20)));
+            Assert.assertEquals(-1, state.getMineRoutes().getMissingSteps(0, 1));
+        }
+    }
+
+    @Test
+    public void listener() {
+        List<String> events = new ArrayList<>();
+        state.addListener(new GameStateListener() {
+            @Override
+            public void riverClaimed(int punter, int river, boolean splurge) {
+                events.add("claimed " + punter + " " + state.getRiverByIndex(river));
+            }
+
+            @Override
+            public void riverReleased(int punter, int river) {
+                events.add("released " + punter + " " + state.getRiverByIndex(river));
+            }
+        });
+        long version = state.getVersion();
+        state.applyMove(Move.claim(0, new River(20, 40)));
+        state.applyTentativeMove(Move.claim(0, new River(0, 20)));
+        state.undoMove();
+        state.applyMove(Move.pass(0));
+        Assert.assertEquals(version + 3, state.getVersion());
+        Assert.assertEquals(Arrays.asList(
+                "claimed 0 " + new River(20, 40),
+                "claimed 0 " + new River(0, 20),
+                "released 0 " + new River(0, 20)), events);
+    }
+
+    @Test(expected = LogicException.class)
+    public void applyMoveWhileTentative() {
+        state.applyTentativeMove(Move.claim(0, new River(20, 40)));
+        state.applyMove(Move.claim(0, new River(0, 20)));
+    }
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        state.applyMove(Move.claim(0, new River(20, 40)));
+        state.movePerformed();
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writeValueAsString(state);
+        GameState copy = mapper.readValue(json, CompactGameState.class);
+        Assert.assertEquals(1, copy.getMovesPerformed());
+        Assert.assertEquals(state.getUnclaimedRivers(), copy.getUnclaimedRivers());
+        Assert.assertEquals(6, copy.getScore(1));
+        Assert.assertEquals(1, copy.getScore(0));
+    }
+}
@@ -1,6 +1,7 @@
 package state;
 
 import io.Map;
+import io.Move;
 import io.River;
 import io.Setup;
 import io.Site;
@@ -65,24 +66,113 @@ public class GameStateTests {
         Assert.assertEquals(6, state.getScore(1));
     }
 
+    @Test
+    public void routeCache() {
+        GraphMap map = new GraphMap(state.getSites(), ((MapBasedGameState) state).getRivers(), 2);
+        Assert.assertEquals(2, map.getShortestRouteLength(2, 3));
+        Assert.assertEquals(2, map.getShortestRouteLength(2, 3));
+        Assert.assertEquals(1, map.getCacheHits());
+        Assert.assertEquals(1, map.getCacheMisses());
+        // more pairs than slots: some are evicted, but results stay correct
+        for (int a = 0; a < 5; a++) {
+            for (int b = 0; b < 5; b++) {
+                Assert.assertEquals(a == b ? 0 : map.getShortestRoute(a, b).size(), map.getShortestRouteLength(a, b));
+            }
+        }
+        Assert.assertTrue(map.getCacheMisses() >= 20);
+    }
+
+    @Test
+    public void routeCacheCapacity() {
+        Set<Integer> sites = state.getSites();
+        Set<River> rivers = ((MapBasedGameState) state).getRivers();
+        Assert.assertEquals(2, new GraphMap(sites, rivers, 1).getCacheCapacity());
+        Assert.assertEquals(2, new GraphMap(sites, rivers, 2).getCacheCapacity());
+        Assert.assertEquals(4, new GraphMap(sites, rivers, 3).getCacheCapacity());
+        Assert.assertEquals(4, new GraphMap(sites, rivers, 4).getCacheCapacity());
+        Assert.assertEquals(8, new GraphMap(sites, rivers, 5).getCacheCapacity());
+        Assert.assertEquals(4096, new GraphMap(sites, rivers, 4096).getCacheCapacity());
+    }
+
     @Test
     public void allRouteLengths3() {
         GraphMap map = ((MapBasedGameState) state).getGraphMap();
 
-        ArrayNatMap<Integer> r = map.getAllShortestRouteLengths(3);
+        IntNatMap r = map.getAllShortestRouteLengths(3);
         Assert.assertEquals(5, r.size());
-        Assert.assertEquals(0, (int) r.get(3));
-        Assert.assertEquals(2, (int) r.get(0));
-        Assert.assertEquals(1, (int) r.get(1));
-        Assert.assertEquals(2, (int) r.get(2));
-        Assert.assertEquals(1, (int) r.get(4));
+        Assert.assertEquals(0, r.get(3));
+        Assert.assertEquals(2, r.get(0));
+        Assert.assertEquals(1, r.get(1));
+        Assert.assertEquals(2, r.get(2));
+        Assert.assertEquals(1, r.get(4));
+        Assert.assertEquals(IntNatMap.ABSENT, r.get(7));
 
         r = map.getAllShortestRouteLengths(4);
         Assert.assertEquals(5, r.size());
-        Assert.assertEquals(0, (int) r.get(4));
-        Assert.assertEquals(1, (int) r.get(0));
-        Assert.assertEquals(2, (int) r.get(1));
-        Assert.assertEquals(1, (int) r.get(2));
-        Assert.assertEquals(1, (int) r.get(3));
+        Assert.assertEquals(0, r.get(4));
+        Assert.assertEquals(1, r.get(0));
+        Assert.assertEquals(2, r.get(1));
+        Assert.assertEquals(1, r.get(2));
+        Assert.assertEquals(1, r.get(3));
+    }
+
+    @Test
+    public void undoRestoresComponents() {
+        Assert.assertFalse(state.canReach(1, 2, 3));
+        state.applyTentativeMove(Move.claim(1, new River(0, 2)));
+        Assert.assertTrue(state.canReach(1, 2, 3));
+        state.applyTentativeMove(Move.claim(0, new River(2, 4)));
+        Assert.assertTrue(state.canReach(0, 2, 4));
+        state.undoMove();
+        Assert.assertFalse(state.canReach(0, 2, 4));
+        Assert.assertTrue(state.canReach(1, 2, 3));
+        state.undoMove();
+        Assert.assertFalse(state.canReach(1, 2, 3));
+        Assert.assertTrue(state.canReach(1, 1, 4));
+    }
+
+    @Test
+    public void riverSets() {
+        Set<River> unclaimed = state.getUnclaimedRivers();
+        Set<River> mine = state.getRiversByOwner(1);
+        Assert.assertEquals(3, unclaimed.size());
+        Assert.assertEquals(3, mine.size());
+        state.applyTentativeMove(Move.claim(1, new River(2, 4)));
+        Assert.assertFalse(unclaimed.contains(new River(2, 4)));
+        Assert.assertTrue(mine.contains(new River(4, 2)));
+        state.undoMove();
+        Assert.assertTrue(unclaimed.contains(new River(2, 4)));
+        Assert.assertEquals(3, mine.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(new River(0, 2), new River(2, 4), new River(0, 4))), unclaimed);
+    }
+
+    @Test
+    public void listener() {
+        List<String> events = new ArrayList<>();
+        state.addListener(new GameStateListener() {
+            @Override
+            public void riverClaimed(int punter, int river, boolean splurge) {
+                events.add("claimed " + punter + " " + state.getRiverByIndex(river));
+            }
+
+            @Override
+            public void riverReleased(int punter, int river) {
+                events.add("released " + punter + " " + state.getRiverByIndex(river));
+            }
+        });
+        long version = state.getVersion();
+        state.applyMove(Move.claim(0, new River(2, 4)));
+        state.applyTentativeMove(Move.claim(0, new River(0, 2)));
+        state.applyTentativeMove(Move.claim(1, new River(0, 4)));
+        state.undoMove();
+        state.undoMove();
+        state.applyMove(Move.pass(0));
+        Assert.assertEquals(version + 5, state.getVersion());
+        Assert.assertEquals(Arrays.asList(
+                "claimed 0 " + new River(2, 4),
+                "claimed 0 " + new River(0, 2),
+                "claimed 1 " + new River(0, 4),
+                "released 1 " + new River(0, 4),
+                "released 0 " + new River(0, 2)), events);
     }
 }
@@ -0,0 +1,66 @@
+package state;
+
+import io.Map;
+import io.River;
+import io.Settings;
+import io.Setup;
+import io.Site;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Small maps shared by the tests.
+ */
+public class TestMaps {
+
+    /**
+     * Sites 0, 10, 20, 30 and 40 with the rivers 0-10, 10-30 and 30-40 owned
+     * by punter 1 and the unclaimed rivers 0-20, 20-40 and 0-40.
+     */
+    public static Map diamond(Integer... mines) {
+        return map(5, mines);
+    }
+
+    /**
+     * The {@link #diamond} with an extra site 50 and the unclaimed rivers
+     * 40-50 and 20-50.
+     */
+    public static Map diamondWithTail(Integer... mines) {
+        return map(6, mines);
+    }
+
+    public static Setup.Request setup(Map map, int punter, int punters, boolean options) {
+        Settings settings = new Settings();
+        settings.setOptions(options);
+        Setup.Request setup = new Setup.Request();
+        setup.setPunter(punter);
+        setup.setPunters(punters);
+        setup.setSettings(settings);
+        setup.setMap(map);
+        return setup;
+    }
+
+    private static Map map(int numSites, Integer... mines) {
+        Set<Site> sites = IntStream.range(0, numSites).mapToObj(i -> new Site(10 * i)).collect(Collectors.toSet());
+        River[] riversA = new River[]{
+                new River(0,10),
+                new River(10,30),
+                new River(30,40),
+                new River(0,20),
+                new River(20,40),
+                new River(0,40),
+                new River(40,50),
+                new River(20,50)
+        };
+        riversA[0].setOwner(1);
+        riversA[1].setOwner(1);
+        riversA[2].setOwner(1);
+        Set<River> rivers = Stream.of(riversA)
+            .limit(numSites == 5 ? 6 : riversA.length)
+            .collect(Collectors.toSet());
+        return new Map(sites, rivers, new HashSet<>(Arrays.asList(mines)));
+    }
+}